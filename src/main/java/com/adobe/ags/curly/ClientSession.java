@@ -0,0 +1,349 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.http.Header;
+import org.apache.http.HttpClientConnection;
+import org.apache.http.HttpEntity;
+import org.apache.http.HttpEntityEnclosingRequest;
+import org.apache.http.HttpException;
+import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.client.AuthCache;
+import org.apache.http.client.CookieStore;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpExecutionAware;
+import org.apache.http.client.methods.HttpRequestWrapper;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.conn.ConnectionRequest;
+import org.apache.http.conn.UnsupportedSchemeException;
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.entity.BufferedHttpEntity;
+import org.apache.http.impl.auth.BasicScheme;
+import org.apache.http.impl.client.BasicAuthCache;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClientBuilder;
+import org.apache.http.impl.client.IdleConnectionEvictor;
+import org.apache.http.impl.client.LaxRedirectStrategy;
+import org.apache.http.impl.conn.DefaultSchemePortResolver;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.impl.execchain.ClientExecChain;
+
+/**
+ * Connections and login state of one batch run. The run's workers share a
+ * single thread-safe client whose pool is sized for the run's concurrency, and
+ * the login cookie is fetched once for all of them, or reused from an earlier
+ * run through {@link LoginTokens}. If the token expires mid-run, one worker
+ * logs in again while the others wait, and their requests are replayed. The
+ * pool lives as long as the session: idle and expired connections are evicted
+ * in the background but the pool itself is never replaced mid-run. Closing
+ * the session closes the client and every pooled connection, so nothing
+ * outlives the run.
+ */
+public class ClientSession implements Closeable {
+
+    private final CredentialsProvider creds;
+    private final String urlBase;
+    private final CookieStore cookieStore = new ConcurrentCookieStore();
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final IdleConnectionEvictor evictor;
+    private final CloseableHttpClient client;
+    private boolean loggedIn = false;
+    private volatile int loginGeneration = 0;
+    private long failedLoginAt = 0;
+    private int failedLoginStatus;
+
+    public ClientSession(CredentialsProvider creds, String urlBase, int concurrency) {
+        this.creds = creds;
+        this.urlBase = urlBase;
+        connectionManager = ConnectionManager.createConnectionManager(concurrency);
+        evictor = ConnectionManager.startEvictor(connectionManager);
+        HttpClientBuilder builder = new HttpClientBuilder() {
+            @Override
+            protected ClientExecChain decorateProtocolExec(ClientExecChain protocolExec) {
+                return new ReloginExec(protocolExec);
+            }
+        }
+                .setDefaultCookieStore(cookieStore)
+                .setConnectionManager(connectionManager)
+                .setKeepAliveStrategy(ConnectionManager.KEEP_ALIVE_STRATEGY)
+                .setRedirectStrategy(new LaxRedirectStrategy());
+        if (!ConnectionManager.USE_LOGIN_COOKIE) {
+            builder.setDefaultCredentialsProvider(creds);
+            // Populated once for the run: every request to the host is sent
+            // with credentials up front
+            AuthCache authCache = new BasicAuthCache();
+            authCache.put(HttpHost.create(urlBase), new BasicScheme());
+            ConnectionManager.usePreemptiveAuth(builder, authCache);
+        }
+        client = builder.build();
+    }
+
+    /**
+     * @return the shared client, logged in on first use
+     */
+    public CloseableHttpClient getClient() {
+        login();
+        return client;
+    }
+
+    /**
+     * Log in unless the session already has. A login token of the same host
+     * and user which is still valid is used instead of a new login. A failed
+     * login is tried again on a later call, but not within
+     * {@link ConnectionManager#LOGIN_BACKOFF} of the failure.
+     *
+     * @return response code of the login, or -1 if no login was needed
+     */
+    public synchronized int login() {
+        if (loggedIn) {
+            return -1;
+        }
+        if (!ConnectionManager.USE_LOGIN_COOKIE) {
+            loggedIn = true;
+            return -1;
+        }
+        if (isBackingOff()) {
+            return failedLoginStatus;
+        }
+        List<Cookie> token = LoginTokens.getInstance().get(urlBase, getUserName(), getPassword());
+        if (token != null) {
+            token.forEach(cookieStore::addCookie);
+            loggedIn = true;
+            return -1;
+        }
+        int status = ConnectionManager.performLogin(client, creds, urlBase);
+        loginDone(status);
+        return status;
+    }
+
+    /**
+     * Log in again after the server stopped accepting the login token. Workers
+     * which find the token expired at the same time all call this, but only
+     * the first one logs in; the others wait for it and then replay their
+     * requests with the new token. Only an accepted login starts a new
+     * generation; after a failed one, calls within
+     * {@link ConnectionManager#LOGIN_BACKOFF} return the failure without
+     * logging in.
+     *
+     * @param expiredGeneration login generation the failed request was sent
+     * with, from {@link #getLoginGeneration()}
+     * @return response code of the login, -1 if another worker already
+     * logged in again, or the failed response code while logins are held back
+     */
+    public synchronized int relogin(int expiredGeneration) {
+        if (expiredGeneration != loginGeneration) {
+            return -1;
+        }
+        if (isBackingOff()) {
+            return failedLoginStatus;
+        }
+        LoginTokens.getInstance().invalidate(urlBase, getUserName());
+        // The expired cookie stays until the login replaces it; requests sent
+        // meanwhile still carry it, so they fail as expired and wait here
+        int status = ConnectionManager.performLogin(client, creds, urlBase);
+        if (loginDone(status)) {
+            loginGeneration++;
+        }
+        return status;
+    }
+
+    private boolean loginDone(int status) {
+        if (!ConnectionManager.isLoginAccepted(status)) {
+            Logger.getLogger(ClientSession.class.getName()).log(Level.WARNING, "Login to {0} failed with {1}", new Object[]{urlBase, status});
+            failedLoginStatus = status;
+            failedLoginAt = System.currentTimeMillis();
+            return false;
+        }
+        LoginTokens.getInstance().put(urlBase, getUserName(), getPassword(), cookieStore.getCookies());
+        loggedIn = true;
+        failedLoginAt = 0;
+        return true;
+    }
+
+    private boolean isBackingOff() {
+        return failedLoginAt != 0 && System.currentTimeMillis() - failedLoginAt < ConnectionManager.LOGIN_BACKOFF;
+    }
+
+    /**
+     * @return number of times the session logged in again, to pass to
+     * {@link #relogin(int)}
+     */
+    public int getLoginGeneration() {
+        return loginGeneration;
+    }
+
+    /**
+     * Sends each request and, if the answer says the login expired, logs in
+     * again through {@link #relogin(int)} and replays the request once. If
+     * the login fails, the expired answer is returned as it is. This
+     * sits inside redirect handling, so a redirect to the login page is seen
+     * before it is followed.
+     */
+    private class ReloginExec implements ClientExecChain {
+
+        private final ClientExecChain backend;
+
+        ReloginExec(ClientExecChain backend) {
+            this.backend = backend;
+        }
+
+        @Override
+        public CloseableHttpResponse execute(HttpRoute route, HttpRequestWrapper request, HttpClientContext context, HttpExecutionAware execAware) throws IOException, HttpException {
+            int generation = loginGeneration;
+            CloseableHttpResponse response = backend.execute(route, request, context, execAware);
+            if (!isExpired(response) || !isReplayable(request)) {
+                return response;
+            }
+            // Read the answer so the connection is free for the login, and
+            // kept so it can be returned if the login fails
+            if (response.getEntity() != null) {
+                response.setEntity(new BufferedHttpEntity(response.getEntity()));
+            }
+            relogin(generation);
+            if (loginGeneration == generation) {
+                return response;
+            }
+            response.close();
+            // A new wrapper, as the old one carries the expired cookie header
+            return backend.execute(route, HttpRequestWrapper.wrap(request.getOriginal(), request.getTarget()), context, execAware);
+        }
+
+        private boolean isExpired(HttpResponse response) {
+            int status = response.getStatusLine().getStatusCode();
+            Header location = response.getFirstHeader("Location");
+            return ConnectionManager.isSessionExpired(status, status >= 300 && status < 400 && location != null ? location.getValue() : null);
+        }
+
+        private boolean isReplayable(HttpRequestWrapper request) {
+            if (request.getRequestLine().getUri().contains(ConnectionManager.LOGIN_URL)) {
+                return false;
+            }
+            if (request instanceof HttpEntityEnclosingRequest) {
+                HttpEntity entity = ((HttpEntityEnclosingRequest) request).getEntity();
+                return entity == null || entity.isRepeatable();
+            }
+            return true;
+        }
+    }
+
+    private String getUserName() {
+        Credentials userCreds = creds.getCredentials(AuthScope.ANY);
+        return userCreds == null ? null : userCreds.getUserPrincipal().getName();
+    }
+
+    private String getPassword() {
+        Credentials userCreds = creds.getCredentials(AuthScope.ANY);
+        return userCreds == null ? null : userCreds.getPassword();
+    }
+
+    /**
+     * Log in and open connections to the host before the first row, so the
+     * first rows do not each pay for a TCP connect and TLS handshake. The
+     * connections are leased together so that each one is new, then returned
+     * to the pool; the JSSE session cache keeps the TLS sessions for
+     * resumption.
+     *
+     * @param connections connections to open, normally the concurrency
+     * @return time taken in milliseconds
+     */
+    public long prewarm(int connections) {
+        long start = System.currentTimeMillis();
+        login();
+        HttpHost target = HttpHost.create(urlBase);
+        HttpRoute route;
+        try {
+            // Same route as the client plans, so the connections are reused
+            int port = DefaultSchemePortResolver.INSTANCE.resolve(target);
+            target = new HttpHost(target.getHostName(), port, target.getSchemeName());
+            route = new HttpRoute(target, null, "https".equalsIgnoreCase(target.getSchemeName()));
+        } catch (UnsupportedSchemeException ex) {
+            Logger.getLogger(ClientSession.class.getName()).log(Level.SEVERE, null, ex);
+            return System.currentTimeMillis() - start;
+        }
+        ExecutorService workers = Executors.newFixedThreadPool(Math.max(1, connections));
+        List<Future<HttpClientConnection>> opened = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            opened.add(workers.submit(() -> openConnection(route)));
+        }
+        List<HttpClientConnection> leased = new ArrayList<>(connections);
+        for (Future<HttpClientConnection> connection : opened) {
+            try {
+                leased.add(connection.get());
+            } catch (InterruptedException | ExecutionException ex) {
+                Logger.getLogger(ClientSession.class.getName()).log(Level.WARNING, "Could not open connection to " + urlBase, ex);
+            }
+        }
+        workers.shutdown();
+        // Only release once all are open, otherwise one could be leased twice
+        leased.forEach(conn -> connectionManager.releaseConnection(conn, null, ConnectionManager.KEEP_ALIVE, TimeUnit.MILLISECONDS));
+        return System.currentTimeMillis() - start;
+    }
+
+    private HttpClientConnection openConnection(HttpRoute route) throws Exception {
+        ConnectionRequest request = connectionManager.requestConnection(route, null);
+        HttpClientConnection conn = request.get(ConnectionManager.CONNECT_TIMEOUT, TimeUnit.MILLISECONDS);
+        try {
+            if (!conn.isOpen()) {
+                HttpClientContext context = HttpClientContext.create();
+                connectionManager.connect(conn, route, ConnectionManager.CONNECT_TIMEOUT, context);
+                connectionManager.routeComplete(conn, route, context);
+                // Binds the socket streams, which HttpCore otherwise leaves
+                // to the first request; the pool's stale check of a connection
+                // never used fails with "Input stream is null"
+                conn.isResponseAvailable(1);
+            }
+            return conn;
+        } catch (IOException ex) {
+            connectionManager.releaseConnection(conn, null, 0, TimeUnit.MILLISECONDS);
+            throw ex;
+        }
+    }
+
+    public String getUrlBase() {
+        return urlBase;
+    }
+
+    public PoolingHttpClientConnectionManager getConnectionManager() {
+        return connectionManager;
+    }
+
+    @Override
+    public void close() {
+        evictor.shutdown();
+        try {
+            client.close();
+        } catch (IOException ex) {
+            Logger.getLogger(ClientSession.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        connectionManager.shutdown();
+    }
+}
@@ -0,0 +1,97 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import org.apache.http.client.CookieStore;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.cookie.CookieIdentityComparator;
+
+/**
+ * Cookie store for many concurrent workers. HttpClient reads the cookies for
+ * every request but a server like AEM only sets them now and then, typically
+ * the login-token after a login, so the cookies are kept as an immutable list
+ * which is replaced on every change. Reads take no lock and make no copy;
+ * writes are serialized. Cookies are identified by name, domain and path the
+ * same way as BasicCookieStore, so a new login-token replaces the old one.
+ */
+public class ConcurrentCookieStore implements CookieStore {
+
+    private static final CookieIdentityComparator IDENTITY = new CookieIdentityComparator();
+
+    private volatile List<Cookie> cookies = Collections.emptyList();
+
+    @Override
+    public void addCookie(Cookie cookie) {
+        if (cookie == null) {
+            return;
+        }
+        synchronized (this) {
+            List<Cookie> updated = new ArrayList<>(cookies.size() + 1);
+            for (Cookie existing : cookies) {
+                if (IDENTITY.compare(existing, cookie) != 0) {
+                    updated.add(existing);
+                }
+            }
+            if (!cookie.isExpired(new Date())) {
+                updated.add(cookie);
+            }
+            cookies = Collections.unmodifiableList(updated);
+        }
+    }
+
+    /**
+     * @return the current cookies; the list is immutable and is not affected
+     * by later changes
+     */
+    @Override
+    public List<Cookie> getCookies() {
+        return cookies;
+    }
+
+    @Override
+    public boolean clearExpired(Date date) {
+        if (date == null) {
+            return false;
+        }
+        synchronized (this) {
+            List<Cookie> updated = new ArrayList<>(cookies.size());
+            for (Cookie cookie : cookies) {
+                if (!cookie.isExpired(date)) {
+                    updated.add(cookie);
+                }
+            }
+            if (updated.size() == cookies.size()) {
+                return false;
+            }
+            cookies = Collections.unmodifiableList(updated);
+            return true;
+        }
+    }
+
+    @Override
+    public synchronized void clear() {
+        cookies = Collections.emptyList();
+    }
+
+    @Override
+    public String toString() {
+        return cookies.toString();
+    }
+}
@@ -20,53 +20,91 @@ import java.security.KeyManagementException;
 import java.security.KeyStoreException;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.http.HttpRequestInterceptor;
 import org.apache.http.NameValuePair;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
-import org.apache.http.client.CookieStore;
+import org.apache.http.client.AuthCache;
 import org.apache.http.client.CredentialsProvider;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.config.Registry;
 import org.apache.http.config.RegistryBuilder;
+import org.apache.http.conn.ConnectionKeepAliveStrategy;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.socket.ConnectionSocketFactory;
 import org.apache.http.conn.socket.PlainConnectionSocketFactory;
 import org.apache.http.conn.ssl.NoopHostnameVerifier;
 import org.apache.http.conn.ssl.SSLConnectionSocketFactory;
 import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
-import org.apache.http.impl.client.BasicCookieStore;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.impl.client.HttpClientBuilder;
-import org.apache.http.impl.client.HttpClients;
-import org.apache.http.impl.client.LaxRedirectStrategy;
+import org.apache.http.impl.client.DefaultConnectionKeepAliveStrategy;
+import org.apache.http.impl.client.IdleConnectionEvictor;
 import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.pool.PoolStats;
 import org.apache.http.ssl.SSLContextBuilder;
+import org.apache.http.util.EntityUtils;
 
 public class ConnectionManager {
 
     static public boolean USE_LOGIN_COOKIE = true;
-    static private ConnectionManager singleton;
+    /**
+     * How long an idle connection is kept when the server does not say so
+     * with a Keep-Alive header, in milliseconds.
+     */
+    public static long KEEP_ALIVE = Long.getLong("curly.keepAlive", 30000);
+    /**
+     * Idle connections are closed in the background after this long, in
+     * milliseconds, so dead sockets are not found by the next request.
+     */
+    public static long IDLE_TIMEOUT = Long.getLong("curly.idleTimeout", 30000);
+    /**
+     * Time allowed to open a connection while warming up a pool, in
+     * milliseconds.
+     */
+    public static int CONNECT_TIMEOUT = Integer.getInteger("curly.connectTimeout", 10000);
+    /**
+     * Pooled connections idle for longer than this are checked before reuse,
+     * in milliseconds; zero or less turns the check off.
+     */
+    public static int VALIDATE_AFTER_INACTIVITY = Integer.getInteger("curly.validateAfterInactivity", 500);
+    /**
+     * After a failed login, no new login is tried for this long, in
+     * milliseconds; requests which find the login expired meanwhile fail
+     * instead of each posting the same wrong credentials.
+     */
+    public static long LOGIN_BACKOFF = Long.getLong("curly.loginBackoff", 5000);
 
-    static public ConnectionManager getInstance() {
-        if (singleton == null) {
-            singleton = new ConnectionManager();
-        }
-        return singleton;
-    }
-
-    CookieStore cookieStore = new BasicCookieStore();
-    PoolingHttpClientConnectionManager connectionManager;
-    ThreadLocal<HttpClientContext> sharedContext = new ThreadLocal<>();
-    private int httpPoolSize = 4;
+    /**
+     * Keep-alive strategy which honors the server's Keep-Alive timeout and
+     * otherwise keeps connections for KEEP_ALIVE, instead of indefinitely.
+     */
+    public static final ConnectionKeepAliveStrategy KEEP_ALIVE_STRATEGY = (response, context) -> {
+        long duration = DefaultConnectionKeepAliveStrategy.INSTANCE.getKeepAliveDuration(response, context);
+        return duration > 0 ? duration : KEEP_ALIVE;
+    };
 
     private ConnectionManager() {
     }
 
-    private void createNewConnectionManager() {
+    /**
+     * Create a connection pool which accepts self-signed certificates, as
+     * local and development AEM instances commonly use them.
+     *
+     * @param maxPoolSize connections allowed in total and per host
+     * @return new pool, or null if SSL could not be set up
+     */
+    public static PoolingHttpClientConnectionManager createConnectionManager(int maxPoolSize) {
         try {
             SSLContextBuilder builder = new SSLContextBuilder();
             builder.loadTrustMaterial(new TrustSelfSignedStrategy());
@@ -77,48 +115,86 @@ public class ConnectionManager {
                     .register("http", new PlainConnectionSocketFactory())
                     .register("https", sslsf)
                     .build();
-            connectionManager = new PoolingHttpClientConnectionManager(r);
-            connectionManager.setValidateAfterInactivity(500);
-            sharedContext = ThreadLocal.withInitial(HttpClientContext::new);
+            PoolingHttpClientConnectionManager pool = new PoolingHttpClientConnectionManager(r);
+            pool.setValidateAfterInactivity(VALIDATE_AFTER_INACTIVITY);
+            pool.setDefaultMaxPerRoute(maxPoolSize);
+            pool.setMaxTotal(maxPoolSize);
+            return pool;
         } catch (NoSuchAlgorithmException | KeyStoreException | KeyManagementException ex) {
             Logger.getLogger(ConnectionManager.class.getName()).log(Level.SEVERE, null, ex);
+            return null;
         }
+    }
 
+    /**
+     * Start closing expired connections, and connections idle for longer than
+     * IDLE_TIMEOUT, of a pool in the background.
+     *
+     * @param pool pool to watch
+     * @return evictor to shut down along with the pool
+     */
+    public static IdleConnectionEvictor startEvictor(PoolingHttpClientConnectionManager pool) {
+        long interval = Math.min(5000, Math.max(100, IDLE_TIMEOUT / 2));
+        IdleConnectionEvictor evictor = new IdleConnectionEvictor(pool, interval, TimeUnit.MILLISECONDS, IDLE_TIMEOUT, TimeUnit.MILLISECONDS);
+        evictor.start();
+        return evictor;
     }
 
-    public void resetConnectionManager(int maxPoolSize) {
-        if (connectionManager == null || connectionManager.getTotalStats().getAvailable() == 0) {
-            createNewConnectionManager();
-        }
-        if (connectionManager.getMaxTotal() != maxPoolSize || connectionManager.getDefaultMaxPerRoute() != maxPoolSize) {
-            httpPoolSize = maxPoolSize;
-            connectionManager.setDefaultMaxPerRoute(maxPoolSize);
-            connectionManager.setMaxTotal(maxPoolSize);
+    /**
+     * Read the current counters of a pool, in total and per route.
+     *
+     * @param pool pool to read
+     * @return counters as of now
+     */
+    public static PoolStatistics.Sample getStats(PoolingHttpClientConnectionManager pool) {
+        Map<String, PoolStats> routes = new LinkedHashMap<>();
+        for (HttpRoute route : pool.getRoutes()) {
+            routes.put(route.getTargetHost().toURI(), pool.getStats(route));
         }
+        return new PoolStatistics.Sample(System.currentTimeMillis(), pool.getTotalStats(), Collections.unmodifiableMap(routes));
     }
 
-    public void shutdown() {
-        if (connectionManager != null) {
-            connectionManager.close();
-            connectionManager.shutdown();
-        }
-        connectionManager = null;
+    /**
+     * Send Basic credentials with the first request to a host instead of
+     * waiting for a 401 challenge, which costs a round trip on every new
+     * context and sends request bodies twice. Contexts without an auth cache
+     * get the given one, so every worker shares it.
+     *
+     * @param builder client to set up
+     * @param authCache cache holding a Basic scheme for each target host
+     */
+    public static void usePreemptiveAuth(HttpClientBuilder builder, AuthCache authCache) {
+        builder.addInterceptorFirst((HttpRequestInterceptor) (request, context) -> {
+            HttpClientContext clientContext = HttpClientContext.adapt(context);
+            if (clientContext.getAuthCache() == null) {
+                clientContext.setAuthCache(authCache);
+            }
+        });
     }
 
-    public CloseableHttpClient getAuthenticatedClient(CredentialsProvider creds) {
-        resetConnectionManager(httpPoolSize);
-        HttpClientBuilder builder = HttpClients.custom()
-                .setDefaultCookieStore(cookieStore)
-                .setConnectionManager(connectionManager)
-                .setConnectionManagerShared(true)
-                .setRedirectStrategy(new LaxRedirectStrategy());
-        if (!USE_LOGIN_COOKIE) {
-            builder.setDefaultCredentialsProvider(creds);
-        }
-        return builder.build();
+    public static final String LOGIN_PAGE = "/libs/granite/core/content/login.html";
+    public static final String LOGIN_URL = LOGIN_PAGE + "/j_security_check";
+
+    /**
+     * Tell whether a response means that the login token is no longer
+     * accepted: AEM answers 401, or sends browsers to the login page.
+     *
+     * @param status response code
+     * @param location redirect target, or the final URL once redirects were
+     * followed; may be null
+     * @return true if logging in again is needed
+     */
+    public static boolean isSessionExpired(int status, String location) {
+        return USE_LOGIN_COOKIE && (status == 401 || (location != null && location.contains(LOGIN_PAGE)));
     }
 
-    private static final String LOGIN_URL = "/libs/granite/core/content/login.html/j_security_check";
+    /**
+     * @param status response code of a login, or -1 if it could not be sent
+     * @return true if the login was accepted
+     */
+    public static boolean isLoginAccepted(int status) {
+        return status >= 200 && status < 400;
+    }
 
     public static int performLogin(CloseableHttpClient client, CredentialsProvider creds, String urlBase) {
         if (!USE_LOGIN_COOKIE) {
@@ -132,15 +208,14 @@ public class ConnectionManager {
             params.add(new BasicNameValuePair("j_username", loginCreds.getUserName()));
             params.add(new BasicNameValuePair("j_password", loginCreds.getPassword()));
             post.setEntity(new UrlEncodedFormEntity(params));
-            int responseCode = client.execute(post).getStatusLine().getStatusCode();
-            return responseCode;
+            try (CloseableHttpResponse response = client.execute(post)) {
+                EntityUtils.consume(response.getEntity());
+                return response.getStatusLine().getStatusCode();
+            }
         } catch (IOException ex) {
             Logger.getLogger(ConnectionManager.class.getName()).log(Level.SEVERE, null, ex);
             return -1;
         }
     }
 
-    public static HttpClientContext getContext() {
-        return getInstance().sharedContext.get();
-    }
 }
@@ -17,9 +17,9 @@ package com.adobe.ags.curly;
 
 import com.adobe.ags.curly.controller.ActionPanelController;
 import com.adobe.ags.curly.controller.AppController;
-import com.adobe.ags.curly.controller.BatchRunner;
 import com.adobe.ags.curly.controller.DataImporterController;
 import com.adobe.ags.curly.controller.RunnerActivityController;
+import com.adobe.ags.curly.model.TaskRunner;
 import com.adobe.ags.curly.xml.Action;
 import java.io.IOException;
 import java.util.List;
@@ -106,7 +106,7 @@ public class CurlyApp extends Application {
         }
     }
 
-    public static void openActivityMonitor(BatchRunner runner) {
+    public static void openActivityMonitor(TaskRunner runner) {
         try {
             FXMLLoader loader = new FXMLLoader(CurlyApp.class.getResource("/fxml/RunnerReport.fxml"));
             loader.setResources(ApplicationState.getInstance().getResourceBundle());
@@ -145,7 +145,6 @@ public class CurlyApp extends Application {
         stage.show();
 
         stage.setOnCloseRequest(event -> {
-            ConnectionManager.getInstance().shutdown();
             Platform.exit();
             System.exit(0);
         });
@@ -0,0 +1,244 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.cookie.BasicClientCookie;
+
+/**
+ * Login cookies, such as the AEM login-token, of each host and user. A login
+ * is only done when there is no token younger than MAX_AGE, so runs against
+ * the same host share one login. A token is only reused with the password it
+ * was obtained with, of which a salted hash is kept, so a changed or wrong
+ * password still gets a real login. With curly.tokenFile set the tokens are also
+ * kept in that file, readable only by its owner, so that the next launch can
+ * reuse them too.
+ */
+public class LoginTokens {
+
+    public static long MAX_AGE = Long.getLong("curly.tokenMaxAge", TimeUnit.HOURS.toMillis(12));
+    public static String FILE = System.getProperty("curly.tokenFile");
+
+    private static LoginTokens singleton;
+
+    public static synchronized LoginTokens getInstance() {
+        if (singleton == null) {
+            singleton = new LoginTokens();
+        }
+        return singleton;
+    }
+
+    private static class StoredCookie {
+
+        String name;
+        String value;
+        String domain;
+        String path;
+        boolean secure;
+        Long expiry;
+    }
+
+    private static class StoredToken {
+
+        String host;
+        String user;
+        String salt;
+        String passwordHash;
+        long obtained;
+        List<StoredCookie> cookies = new ArrayList<>();
+    }
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Map<String, StoredToken> tokens = new HashMap<>();
+    private boolean loaded = false;
+
+    private static String key(String urlBase, String user) {
+        return urlBase + " " + user;
+    }
+
+    private static String hash(String salt, String password) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            digest.update(salt.getBytes(StandardCharsets.UTF_8));
+            digest.update(String.valueOf(password).getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest.digest());
+        } catch (NoSuchAlgorithmException ex) {
+            // Every Java platform has SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * @param urlBase host
+     * @param user user name
+     * @param password current password; a token obtained with another
+     * password is dropped, so that a changed or wrong password is noticed
+     * @return cookies of a login that is still valid, or null if a login is
+     * needed
+     */
+    public synchronized List<Cookie> get(String urlBase, String user, String password) {
+        load();
+        StoredToken token = tokens.get(key(urlBase, user));
+        if (token == null) {
+            return null;
+        }
+        if (token.salt == null || !hash(token.salt, password).equals(token.passwordHash)) {
+            invalidate(urlBase, user);
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        List<Cookie> cookies = new ArrayList<>(token.cookies.size());
+        for (StoredCookie stored : token.cookies) {
+            BasicClientCookie cookie = new BasicClientCookie(stored.name, stored.value);
+            cookie.setDomain(stored.domain);
+            cookie.setPath(stored.path);
+            cookie.setSecure(stored.secure);
+            if (stored.expiry != null) {
+                cookie.setExpiryDate(new Date(stored.expiry));
+            }
+            cookies.add(cookie);
+        }
+        if (now - token.obtained > MAX_AGE || cookies.stream().anyMatch(cookie -> cookie.isExpired(new Date(now)))) {
+            invalidate(urlBase, user);
+            return null;
+        }
+        return cookies;
+    }
+
+    /**
+     * Remember the cookies of a successful login.
+     *
+     * @param urlBase host
+     * @param user user name
+     * @param password password of the login, kept only as a salted hash
+     * @param cookies cookies held after the login; nothing is remembered if
+     * the login did not set any
+     */
+    public synchronized void put(String urlBase, String user, String password, List<Cookie> cookies) {
+        if (cookies.isEmpty()) {
+            return;
+        }
+        load();
+        StoredToken token = new StoredToken();
+        token.host = urlBase;
+        token.user = user;
+        byte[] salt = new byte[16];
+        RANDOM.nextBytes(salt);
+        token.salt = Base64.getEncoder().encodeToString(salt);
+        token.passwordHash = hash(token.salt, password);
+        token.obtained = System.currentTimeMillis();
+        for (Cookie cookie : cookies) {
+            StoredCookie stored = new StoredCookie();
+            stored.name = cookie.getName();
+            stored.value = cookie.getValue();
+            stored.domain = cookie.getDomain();
+            stored.path = cookie.getPath();
+            stored.secure = cookie.isSecure();
+            stored.expiry = cookie.getExpiryDate() == null ? null : cookie.getExpiryDate().getTime();
+            token.cookies.add(stored);
+        }
+        tokens.put(key(urlBase, user), token);
+        save();
+    }
+
+    /**
+     * Forget the login of a host and user, for example when the server no
+     * longer accepts it.
+     *
+     * @param urlBase host
+     * @param user user name
+     */
+    public synchronized void invalidate(String urlBase, String user) {
+        load();
+        if (tokens.remove(key(urlBase, user)) != null) {
+            save();
+        }
+    }
+
+    /**
+     * Drop the tokens held in memory and read FILE again on next use.
+     */
+    public synchronized void reload() {
+        tokens.clear();
+        loaded = false;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (FILE == null || !new File(FILE).isFile()) {
+            return;
+        }
+        try (Reader reader = Files.newBufferedReader(new File(FILE).toPath(), StandardCharsets.UTF_8)) {
+            StoredToken[] stored = new Gson().fromJson(reader, StoredToken[].class);
+            if (stored != null) {
+                for (StoredToken token : stored) {
+                    tokens.put(key(token.host, token.user), token);
+                }
+            }
+        } catch (IOException | JsonParseException ex) {
+            Logger.getLogger(LoginTokens.class.getName()).log(Level.WARNING, "Could not read login tokens from " + FILE, ex);
+        }
+    }
+
+    private void save() {
+        if (FILE == null) {
+            return;
+        }
+        File file = new File(FILE);
+        try {
+            if (!file.exists()) {
+                try {
+                    // Private from the start, never readable by others
+                    Files.createFile(file.toPath(), PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rw-------")));
+                } catch (UnsupportedOperationException ex) {
+                    Files.createFile(file.toPath());
+                    file.setReadable(false, false);
+                    file.setReadable(true, true);
+                }
+            }
+            try (Writer writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8)) {
+                new Gson().toJson(tokens.values().toArray(new StoredToken[0]), writer);
+            }
+        } catch (IOException ex) {
+            Logger.getLogger(LoginTokens.class.getName()).log(Level.WARNING, "Could not write login tokens to " + FILE, ex);
+        }
+    }
+}
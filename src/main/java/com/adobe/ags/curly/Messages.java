@@ -28,14 +28,21 @@ public class Messages {
     public static final String COULD_NOT_DETECT_RESPONSE_STATUS = "couldNotDetectResponseStatus";    
     public static final String INCOMPLETE = "incomplete";
     public static final String INCOMPLETE_FIELDS = "incompleteFieldsError";
+    public static final String INVALID_URL_ERROR = "invalidUrlError";
+    public static final String MISSING_FILE_ERROR = "missingFileError";
     public static final String MISSING_NVP_FORM_ERROR = "missingNameValuePairFormParameter";
     public static final String MISSING_NVP_HEADER_ERROR = "missingNameValuePairHeader";
+    public static final String MISSING_URL_ERROR = "missingUrlError";
+    public static final String MISSING_VARIABLE_ERROR = "missingVariableError";
     public static final String NO_DATA_LOADED = "noDataLoaded";
     public static final String NOT_STARTED = "notStarted";
+    public static final String POOL_STATS = "poolStats";
     public static final String REMOVE_FAVORITE = "removeFavorite";
     public static final String STOP = "stop";
     public static final String UNKNOWN_METHOD_ERROR = "unknownMethodError";
     public static final String UNKNOWN_PARAMETER = "unknownParameter";
+    public static final String UPLOAD_SKIPPED = "uploadSkipped";
+    public static final String UNTERMINATED_QUOTE_ERROR = "unterminatedQuoteError";
     public static final String UNSUPPORTED_METHOD_ERROR = "unsupportedMethodError";
 
     private Messages() {
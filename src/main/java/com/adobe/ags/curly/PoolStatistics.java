@@ -0,0 +1,141 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.beans.property.ObjectProperty;
+import javafx.beans.property.SimpleObjectProperty;
+import org.apache.http.impl.conn.PoolingHttpClientConnectionManager;
+import org.apache.http.pool.PoolStats;
+
+/**
+ * Time series of connection pool statistics for a batch run. A single daemon
+ * thread samples the pool at a fixed interval; the pool lock is only taken
+ * for the moment it takes to copy the counters, once per interval, so workers
+ * leasing connections are not slowed down by anyone watching. Readers only
+ * touch the recorded samples, never the pool.
+ */
+public class PoolStatistics {
+
+    public static long INTERVAL = Long.getLong("curly.poolSampleInterval", 1000);
+    public static int HISTORY = Integer.getInteger("curly.poolSampleHistory", 3600);
+
+    /**
+     * Pool counters at one point in time.
+     */
+    public static class Sample {
+
+        private final long time;
+        private final PoolStats total;
+        private final Map<String, PoolStats> routes;
+
+        Sample(long time, PoolStats total, Map<String, PoolStats> routes) {
+            this.time = time;
+            this.total = total;
+            this.routes = routes;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        /**
+         * @return leased, available, pending and max over the whole pool
+         */
+        public PoolStats getTotal() {
+            return total;
+        }
+
+        /**
+         * @return counters per target host, such as http://localhost:4502
+         */
+        public Map<String, PoolStats> getRoutes() {
+            return routes;
+        }
+    }
+
+    private final Sample[] samples = new Sample[Math.max(1, HISTORY)];
+    private int next = 0;
+    private int count = 0;
+    private final ObjectProperty<Sample> latest = new SimpleObjectProperty<>();
+    private ScheduledExecutorService sampler;
+
+    /**
+     * Start sampling a pool, replacing any pool sampled before. Samples
+     * already recorded are kept.
+     *
+     * @param pool pool of the run
+     */
+    public synchronized void start(PoolingHttpClientConnectionManager pool) {
+        stop();
+        sampler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Pool statistics");
+            t.setDaemon(true);
+            return t;
+        });
+        sampler.scheduleAtFixedRate(() -> {
+            try {
+                record(ConnectionManager.getStats(pool));
+            } catch (RuntimeException ex) {
+                Logger.getLogger(PoolStatistics.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }, 0, Math.max(1, INTERVAL), TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void stop() {
+        if (sampler != null) {
+            sampler.shutdownNow();
+            sampler = null;
+        }
+    }
+
+    void record(Sample sample) {
+        synchronized (samples) {
+            samples[next] = sample;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+        }
+        latest.set(sample);
+    }
+
+    /**
+     * @return recorded samples, oldest first; only the last HISTORY samples
+     * are kept
+     */
+    public List<Sample> getSamples() {
+        synchronized (samples) {
+            List<Sample> list = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                list.add(samples[(next - count + i + samples.length) % samples.length]);
+            }
+            return list;
+        }
+    }
+
+    /**
+     * @return most recent sample; changes from the sampling thread
+     */
+    public ObjectProperty<Sample> latestProperty() {
+        return latest;
+    }
+}
@@ -25,11 +25,14 @@ import com.adobe.ags.curly.model.TaskRunner;
 import com.adobe.ags.curly.xml.ErrorBehavior;
 import java.io.IOException;
 import java.text.ParseException;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -39,24 +42,50 @@ import org.apache.http.impl.client.CloseableHttpClient;
 
 public class ActionGroupRunner implements TaskRunner {
 
-    Map<Action, ActionRunner> actions;
+    /**
+     * Everything needed to build the runner for one action once the row is
+     * actually executed. Runners are only materialized inside run() so that
+     * queued rows do not hold bound requests.
+     */
+    private static class PendingAction {
+
+        final Action action;
+        final CommandTemplate template;
+        final ActionResult result;
+
+        PendingAction(Action action, CommandTemplate template, ActionResult result) {
+            this.action = action;
+            this.template = template;
+            this.result = result;
+        }
+    }
+
+    List<PendingAction> actions;
     Map<String, String> vars;
+    UploadCache uploadCache;
     BooleanProperty skipTheRest = new SimpleBooleanProperty(false);
     ActionGroupRunnerResult results;
     Function<Boolean, CloseableHttpClient> clientSupplier;
     Action lastAction;
 
     public ActionGroupRunner(String taskName, Function<Boolean, CloseableHttpClient> clientSupplier, List<Action> actions, Map<String, String> variables, Set<String> reportColumns) throws ParseException {
-        this.actions = new LinkedHashMap<>();
+        this(taskName, clientSupplier, actions, Collections.emptyMap(), variables, reportColumns);
+    }
+
+    public ActionGroupRunner(String taskName, Function<Boolean, CloseableHttpClient> clientSupplier, List<Action> actions, Map<Action, CommandTemplate> templates, Map<String, String> variables, Set<String> reportColumns) throws ParseException {
+        this.actions = new ArrayList<>(actions.size());
         this.clientSupplier = clientSupplier;
         results = new ActionGroupRunnerResult(taskName, actions, variables, reportColumns);
         actions.forEach((Action action) -> {
             lastAction = action;
-            ActionRunner runner = null;
             try {
-                runner = new ActionRunner(this::withClient, action, variables);
-                this.actions.put(action, runner);
-                results.addDetail(runner.response);
+                CommandTemplate template = templates.get(action);
+                if (template == null) {
+                    template = CommandTemplate.compile(action);
+                }
+                ActionResult response = new ActionResult(action.getName());
+                this.actions.add(new PendingAction(action, template, response));
+                results.addDetail(response);
             } catch (ParseException ex) {
                 Logger.getLogger(ActionGroupRunner.class.getName()).log(Level.SEVERE, null, ex);
                 ActionResult response = new ActionResult(action.getName(), ex);
@@ -97,13 +126,14 @@ public class ActionGroupRunner implements TaskRunner {
     @Override
     public void run() {
         getResult().started().set(true);
-        actions.keySet().forEach((Action action) -> {
+        actions.forEach((PendingAction pending) -> {
+            Action action = pending.action;
             if (!ApplicationState.getInstance().runningProperty().get() || skipTheRest.get()) {
                 return;
             }
-            ActionRunner runner = actions.get(action);
-            ActionResult response;
-            int retry = action.getErrorBehavior() == ErrorBehavior.RETRY ? 3 : 1;
+            ActionRunner runner = new ActionRunner(this::withClient, pending.template, vars, pending.result);
+            runner.uploadCache = uploadCache;
+            int retry = getRetries(action);
             while (retry-- >= 0) {
                 try {
                     runner.run();
@@ -123,14 +153,73 @@ public class ActionGroupRunner implements TaskRunner {
                 } catch (Exception ex) {
                     Logger.getLogger(ActionGroupRunner.class.getName()).log(Level.SEVERE, null, ex);
                     if (retry <= 0) {
-                        response = new ActionResult(runner);
-                        response.setException(ex);
+                        pending.result.setException(ex);
                         handleError();
                     }
                 }
             }
         });
         results.updateComputations();
+        // Only the results are needed once the row is done
+        actions.clear();
+        vars = null;
+        client = null;
+    }
+
+    /**
+     * Run the row on the asynchronous engine: each action is issued from the
+     * completion of the previous one, so no thread waits on the row. A failing
+     * action is tried as many times as by {@link #run()}, see
+     * {@link #getRetries(Action)}, and then handled by its error behavior.
+     *
+     * @param engine engine of the batch run
+     * @return completes when the row is done
+     */
+    public CompletableFuture<Void> runAsync(AsyncEngine engine) {
+        getResult().started().set(true);
+        CompletableFuture<Void> row = CompletableFuture.completedFuture(null);
+        for (PendingAction pending : actions) {
+            row = row.thenCompose(v -> runActionAsync(engine, pending, getRetries(pending.action)));
+        }
+        return row.whenComplete((v, ex) -> {
+            if (ex != null) {
+                Logger.getLogger(ActionGroupRunner.class.getName()).log(Level.SEVERE, null, ex);
+            }
+            results.updateComputations();
+            actions.clear();
+            vars = null;
+        });
+    }
+
+    /**
+     * @return times a failing action is sent again: {@link #run()} also sends
+     * an action once more after its last failure, so an action with the RETRY
+     * behavior is sent four times and any other action twice
+     */
+    private static int getRetries(Action action) {
+        return action.getErrorBehavior() == ErrorBehavior.RETRY ? 3 : 1;
+    }
+
+    private CompletableFuture<Void> runActionAsync(AsyncEngine engine, PendingAction pending, int retriesLeft) {
+        if (!ApplicationState.getInstance().runningProperty().get() || skipTheRest.get()) {
+            return CompletableFuture.completedFuture(null);
+        }
+        ActionRunner runner = new ActionRunner(this::withClient, pending.template, vars, pending.result);
+        runner.uploadCache = uploadCache;
+        return runner.runAsync(engine).thenCompose(v -> {
+            if (!runner.response.completelySuccessful().get()) {
+                if (retriesLeft > 0) {
+                    System.err.println("Error in HTTP request - RETRYING " + runner.URL);
+                    return CompletableFuture.runAsync(() -> {
+                    }, CompletableFuture.delayedExecutor(250, TimeUnit.MILLISECONDS))
+                            .thenCompose(x -> runActionAsync(engine, pending, retriesLeft - 1));
+                }
+                handleError();
+            } else if (pending.action.getErrorBehavior() == ErrorBehavior.SKIP_IF_SUCCESSFUL) {
+                skipTheRest.set(true);
+            }
+            return CompletableFuture.completedFuture(null);
+        });
     }
 
     private void handleError() {
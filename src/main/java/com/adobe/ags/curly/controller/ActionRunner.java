@@ -16,44 +16,47 @@
 package com.adobe.ags.curly.controller;
 
 import com.adobe.ags.curly.ApplicationState;
-import com.adobe.ags.curly.ConnectionManager;
 import com.adobe.ags.curly.model.ActionResult;
-import com.adobe.ags.curly.model.ActionUtils;
 import com.adobe.ags.curly.xml.Action;
+import com.adobe.ags.curly.xml.ResultType;
 import com.google.gson.internal.LinkedTreeMap;
 import java.io.File;
+import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.net.URI;
 import java.net.URISyntaxException;
-import java.net.URLEncoder;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.security.MessageDigest;
 import java.text.ParseException;
 import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.HashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 import java.util.logging.Level;
 import java.util.logging.Logger;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
-import javafx.beans.property.BooleanProperty;
-import javafx.beans.property.SimpleBooleanProperty;
-import javafx.beans.property.SimpleStringProperty;
-import javafx.beans.property.StringProperty;
 import org.apache.http.NameValuePair;
+import org.apache.http.client.HttpClient;
+import org.apache.http.client.config.RequestConfig;
 import org.apache.http.client.entity.UrlEncodedFormEntity;
 import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.Configurable;
 import org.apache.http.client.methods.HttpDelete;
 import org.apache.http.client.methods.HttpEntityEnclosingRequestBase;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.methods.HttpRequestBase;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.protocol.HttpClientContext;
 import org.apache.http.entity.ContentType;
-import org.apache.http.entity.FileEntity;
 import org.apache.http.entity.mime.MultipartEntityBuilder;
 import org.apache.http.impl.client.CloseableHttpClient;
 import org.apache.http.message.BasicNameValuePair;
@@ -64,27 +67,64 @@ import static com.adobe.ags.curly.Messages.*;
 public class ActionRunner implements Runnable {
 
     public static final String UTF8 = "UTF-8";
+    /**
+     * Ask the server for 100-continue before sending upload bodies, so that a
+     * rejected or unauthorized upload fails before the file is transmitted.
+     */
+    public static boolean EXPECT_CONTINUE = Boolean.getBoolean("curly.expectContinue");
+
+    /**
+     * Headers which the JDK client sets itself and refuses from callers.
+     */
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
 
     public static enum HttpMethod {
         GET, POST, DELETE, HEAD, PUT, TRACE, CONNECT, OPTIONS
     };
+
+    /**
+     * A file sent by the current request, recorded in the upload cache once
+     * the request succeeds.
+     */
+    private static class PendingUpload {
+
+        final UploadCache.FileKey key;
+        final MessageDigest digest;
+        final String repositoryPath;
+
+        PendingUpload(UploadCache.FileKey key, MessageDigest digest, String repositoryPath) {
+            this.key = key;
+            this.digest = digest;
+            this.repositoryPath = repositoryPath;
+        }
+    }
     Map<String, List<String>> postVariables = new LinkedTreeMap<>();
-    Map<String, List<String>> getVariables = new LinkedTreeMap<>();
     Map<String, String> requestHeaders = new LinkedTreeMap<>();
     Action action;
     String URL;
+    String requestUrl;
     HttpMethod httpMethod = HttpMethod.GET;
     String putFile = "";
-    boolean httpMethodExplicitlySet = false;
     boolean multipart = false;
     ActionResult response;
+    CommandTemplate template;
+    UploadCache uploadCache;
+    List<PendingUpload> uploads;
     Function<Function<CloseableHttpClient, Optional<Exception>>, Optional<Exception>> processor;
 
     public ActionRunner(Function<Function<CloseableHttpClient, Optional<Exception>>, Optional<Exception>> processor, Action action, Map<String, String> variables) throws ParseException {
+        this(processor, CommandTemplate.compile(action), variables);
+    }
+
+    public ActionRunner(Function<Function<CloseableHttpClient, Optional<Exception>>, Optional<Exception>> processor, CommandTemplate template, Map<String, String> variables) {
+        this(processor, template, variables, new ActionResult(template.getAction().getName()));
+    }
+
+    public ActionRunner(Function<Function<CloseableHttpClient, Optional<Exception>>, Optional<Exception>> processor, CommandTemplate template, Map<String, String> variables, ActionResult response) {
         this.processor = processor;
-        parseCommand(action);
-        applyVariables(variables);
-        response = new ActionResult(this);
+        this.template = template;
+        this.response = response;
+        bindTemplate(variables);
     }
 
     public Action getAction() {
@@ -109,8 +149,19 @@ public class ActionRunner implements Runnable {
             }
         }
 
-        HttpUriRequest request;
+        boolean directBinary = multipart && DirectBinaryUpload.isInitiateUrl(getURL());
+        // Parts of direct binary uploads are not hashed, so they are never cached
+        boolean cacheUploads = !directBinary && isUploadCached();
+        if (cacheUploads && skipCompletedUpload()) {
+            return;
+        }
+
+        HttpRequestBase request;
         try {
+            if (directBinary) {
+                runDirectBinaryUpload();
+                return;
+            }
             switch (httpMethod) {
                 case GET:
                     request = new HttpGet(getURL());
@@ -127,15 +178,20 @@ public class ActionRunner implements Runnable {
                     break;
                 case PUT:
                     request = new HttpPut(getURL());
-                    ((HttpPut) request).setEntity(new FileEntity(new File(putFile)));
+                    File f = new File(putFile);
+                    ((HttpPut) request).setEntity(new FileChannelEntity(f, null, trackUpload(f, null)));
                     break;
                 default:
                     throw new UnsupportedOperationException(ApplicationState.getMessage(UNSUPPORTED_METHOD_ERROR) + ": " + httpMethod.name());
             }
 
             addHeaders(request);
+            boolean expectContinue = EXPECT_CONTINUE && (multipart || httpMethod == HttpMethod.PUT);
             Optional<Exception> ex = processor.apply((CloseableHttpClient client) -> {
-                try (CloseableHttpResponse httpResponse = client.execute(request, ConnectionManager.getContext())) {
+                if (expectContinue) {
+                    request.setConfig(withExpectContinue(client));
+                }
+                try (CloseableHttpResponse httpResponse = client.execute(request)) {
                     response.processHttpResponse(httpResponse, action.getResultType());
                     EntityUtils.consume(httpResponse.getEntity());
                     return Optional.empty();
@@ -146,6 +202,9 @@ public class ActionRunner implements Runnable {
             if (ex.isPresent()) {
                 throw ex.get();
             }
+            if (cacheUploads && response.percentSuccess().get() >= 1) {
+                recordUploads();
+            }
         } catch (Exception ex) {
             Logger.getLogger(ActionRunner.class.getName()).log(Level.SEVERE, null, ex);
             response.setException(ex);
@@ -154,28 +213,151 @@ public class ActionRunner implements Runnable {
         }
     }
 
-    private String getURL() throws URISyntaxException {
-        StringBuilder urlBuilder = new StringBuilder();
-        String URI = URL.contains("?") ? URL.substring(0, URL.indexOf('?')) : URL;
-        URI = URI.replaceAll("\\s", "%20");
-        urlBuilder.append(URI);
-        final BooleanProperty hasQueryString = new SimpleBooleanProperty(URL.contains("?"));
-        getVariables.forEach((key, values) -> {
-            if (values != null) {
-                values.forEach(value -> {
-                    try {
-                        urlBuilder.append(hasQueryString.get() ? "&" : "?")
-                                .append(URLEncoder.encode(key, UTF8))
-                                .append("=")
-                                .append(URLEncoder.encode(value != null ? value : "", UTF8));
-                        hasQueryString.set(false);
-                    } catch (UnsupportedEncodingException ex) {
-                        Logger.getLogger(ActionRunner.class.getName()).log(Level.SEVERE, null, ex);
-                    }
+    /**
+     * Run the action on the asynchronous engine. Multipart uploads, and
+     * requests with headers the JDK client does not accept, need a blocking
+     * request and run on the engine's blocking pool instead.
+     *
+     * @param engine engine of the batch run
+     * @return completes once the result is set, never exceptionally
+     */
+    public CompletableFuture<Void> runAsync(AsyncEngine engine) {
+        if (multipart || !isAsyncSendable(requestHeaders)) {
+            return CompletableFuture.runAsync(this, engine.getBlockingExecutor());
+        }
+        if (!ApplicationState.getInstance().runningProperty().get()) {
+            response.setException(new Exception(ApplicationState.getMessage(ACTIVITY_TERMINATED)));
+            return CompletableFuture.completedFuture(null);
+        }
+        response.started().set(true);
+        response.updateProgress(0.5);
+        if (isUploadCached() && skipCompletedUpload()) {
+            return CompletableFuture.completedFuture(null);
+        }
+
+        CompletableFuture<Void> start = CompletableFuture.completedFuture(null);
+        if (action.getDelay() > 0) {
+            start = CompletableFuture.runAsync(() -> {
+            }, CompletableFuture.delayedExecutor(action.getDelay(), TimeUnit.MILLISECONDS));
+        }
+        return start.thenCompose(v -> {
+            try {
+                return engine.send(buildAsyncRequest(), action.getResultType() == ResultType.HTML);
+            } catch (Exception ex) {
+                return CompletableFuture.failedFuture(ex);
+            }
+        }).thenAccept(httpResponse -> {
+            try {
+                response.processHttpResponse(httpResponse, action.getResultType());
+            } catch (IOException ex) {
+                throw new CompletionException(ex);
+            }
+            if (uploads != null && response.percentSuccess().get() >= 1) {
+                recordUploads();
+            }
+        }).exceptionally(ex -> {
+            Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+            Logger.getLogger(ActionRunner.class.getName()).log(Level.SEVERE, null, cause);
+            response.setException(cause instanceof Exception ? (Exception) cause : new Exception(cause));
+            return null;
+        }).whenComplete((v, ex) -> response.updateProgress(1));
+    }
+
+    private HttpRequest.Builder buildAsyncRequest() throws IOException {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(getURL()));
+        switch (httpMethod) {
+            case GET:
+                builder.GET();
+                break;
+            case HEAD:
+                builder.method("HEAD", BodyPublishers.noBody());
+                break;
+            case DELETE:
+                builder.DELETE();
+                break;
+            case POST:
+                // Same form encoding as the blocking request
+                HttpPost post = new HttpPost(getURL());
+                addPostParams(post);
+                builder.POST(BodyPublishers.ofByteArray(EntityUtils.toByteArray(post.getEntity())));
+                builder.setHeader("Content-Type", post.getEntity().getContentType().getValue());
+                break;
+            case PUT:
+                File f = new File(putFile);
+                MessageDigest digest = trackUpload(f, null);
+                builder.PUT(digest == null ? BodyPublishers.ofFile(f.toPath()) : new DigestingBodyPublisher(f.toPath(), digest));
+                builder.expectContinue(EXPECT_CONTINUE);
+                break;
+            default:
+                throw new UnsupportedOperationException(ApplicationState.getMessage(UNSUPPORTED_METHOD_ERROR) + ": " + httpMethod.name());
+        }
+        setAsyncHeaders(builder, requestHeaders);
+        return builder;
+    }
+
+    /**
+     * @param headers headers of a request
+     * @return false if the JDK client would refuse one of the headers; only
+     * "Expect: 100-continue" has an equivalent there
+     */
+    public static boolean isAsyncSendable(Map<String, String> headers) {
+        return headers.entrySet().stream().noneMatch(header
+                -> RESTRICTED_HEADERS.contains(header.getKey().toLowerCase(Locale.ROOT))
+                && !isExpectContinue(header.getKey(), header.getValue()));
+    }
+
+    /**
+     * Set headers on a JDK request; "Expect: 100-continue" is translated to
+     * the builder's own setting, and other restricted headers are skipped.
+     *
+     * @param builder request to add the headers to
+     * @param headers headers of the request
+     */
+    public static void setAsyncHeaders(HttpRequest.Builder builder, Map<String, String> headers) {
+        headers.forEach((name, value) -> {
+            if (isExpectContinue(name, value)) {
+                builder.expectContinue(true);
+            } else if (RESTRICTED_HEADERS.contains(name.toLowerCase(Locale.ROOT))) {
+                Logger.getLogger(ActionRunner.class.getName()).log(Level.WARNING, "Header {0} is not sent asynchronously", name);
+            } else {
+                builder.setHeader(name, value);
+            }
+        });
+    }
+
+    private static boolean isExpectContinue(String name, String value) {
+        return "expect".equalsIgnoreCase(name) && "100-continue".equalsIgnoreCase(value.trim());
+    }
+
+    private void runDirectBinaryUpload() throws Exception {
+        List<File> files = new ArrayList<>();
+        Map<String, List<String>> completeFields = new LinkedTreeMap<>();
+        postVariables.forEach((name, values) -> values.forEach(value -> {
+            if (value.startsWith("@")) {
+                files.add(new File(value.substring(1)));
+            } else {
+                completeFields.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
+            }
+        }));
+        DirectBinaryUpload upload = new DirectBinaryUpload(getURL(), files, completeFields);
+        Optional<Exception> ex = processor.apply((CloseableHttpClient client) -> {
+            try {
+                upload.execute(client, HttpClientContext.create(), httpResponse -> {
+                    response.processHttpResponse(httpResponse, action.getResultType());
+                    return response.percentSuccess().get() >= 1;
                 });
+                return Optional.empty();
+            } catch (Exception e) {
+                return Optional.of(e);
             }
         });
-        return urlBuilder.toString();
+        if (ex.isPresent()) {
+            throw ex.get();
+        }
+    }
+
+    private String getURL() {
+        return requestUrl;
     }
 
     private void addHeaders(HttpUriRequest request) {
@@ -189,7 +371,13 @@ public class ActionRunner implements Runnable {
             if (multipart) {
                 if (value.startsWith("@")) {
                     File f = new File(value.substring(1));
-                    multipartBuilder.addBinaryBody(name, f, ContentType.DEFAULT_BINARY, f.getName());
+                    String copyFrom = getCopyFromPath(name, f);
+                    if (copyFrom != null) {
+                        multipartBuilder.addTextBody(getNodeName(name, f) + "@CopyFrom", copyFrom);
+                    } else {
+                        MessageDigest digest = trackUpload(f, getRepositoryPath(name, f));
+                        multipartBuilder.addPart(name, new FileChannelBody(f, ContentType.DEFAULT_BINARY, f.getName(), digest));
+                    }
                 } else {
                     multipartBuilder.addTextBody(name, value);
                 }
@@ -204,251 +392,189 @@ public class ActionRunner implements Runnable {
         }
     }
 
-    private void parseCommand(Action action) throws ParseException {
-        this.action = action;
-        String commandStr = tokenizeParameters(action.getCommand());
-
-        List<String> parts = splitByUnquotedSpaces(commandStr);
-        URL = detokenizeParameters(parts.remove(parts.size() - 1));
-        int offset = 0;
-        for (int i = 0; i < parts.size(); i++) {
-            String part = parts.get(i);
-            if (part.startsWith("-")) {
-                if (part.length() == 2 && i < parts.size() - 1) {
-                    if (parseCmdParam(part.charAt(1), parts.get(i + 1), offset)) {
-                        i++;
-                    }
-                } else {
-                    parseCmdParam(part.charAt(1), part.substring(2), offset);
-                }
-            } else {
-                throw new ParseException(ApplicationState.getMessage(UNKNOWN_PARAMETER) + ": " + part, offset);
-            }
-            offset += part.length() + 1;
-        }
+    /**
+     * A request's own config replaces the client's default entirely, so the
+     * default is copied to keep its timeouts, cookie spec and redirect
+     * settings.
+     *
+     * @param client client the request is sent with
+     * @return the client's default request config with Expect: 100-continue
+     */
+    public static RequestConfig withExpectContinue(HttpClient client) {
+        RequestConfig defaults = client instanceof Configurable ? ((Configurable) client).getConfig() : null;
+        return RequestConfig.copy(defaults != null ? defaults : RequestConfig.DEFAULT).setExpectContinueEnabled(true).build();
     }
 
-    public static List<String> splitByUnquotedSpaces(String str) {
-        List<String> list = new ArrayList<>();
-        String token = "";
-        boolean insideQuote = false;
-        for (int i = 0; i < str.length(); i++) {
-            char c = str.charAt(i);
-
-            switch (c) {
-                case '"':
-                    insideQuote = !insideQuote;
-                    break;
-                case ' ':
-                case '\t':
-                case '\n':
-                    if (!insideQuote) {
-                        if (!token.isEmpty()) {
-                            list.add(token);
-                            token = "";
-                        }
-                        break;
-                    }
-                default:
-                    token += c;
-            }
-        }
-        if (!token.isEmpty()) {
-            list.add(token);
+    private boolean isUploadCached() {
+        return uploadCache != null && uploadCache.isEnabled() && (multipart || httpMethod == HttpMethod.PUT);
+    }
+
+    /**
+     * Look the upload up in the upload cache, and if it is new, track the
+     * files it sends.
+     *
+     * @return true if the same upload was completed before, so the action is
+     * marked skipped and nothing is sent
+     */
+    private boolean skipCompletedUpload() {
+        String signature = getUploadSignature();
+        if (signature != null && uploadCache.isCompleted(signature)) {
+            response.setSkipped(ApplicationState.getMessage(UPLOAD_SKIPPED));
+            return true;
         }
-        return list;
+        uploads = new ArrayList<>();
+        return false;
     }
 
-    private String tokenizeParameters(String str) {
-        Set<String> variableTokens = ActionUtils.getVariableNames(action);
-        int tokenCounter = 0;
-        for (String var : variableTokens) {
-            String varPattern = Pattern.quote("${") + var + "(\\|.*?)?" + Pattern.quote("}");
-            str = str.replaceAll(varPattern, Matcher.quoteReplacement("${" + (tokenCounter++) + "}"));
+    /**
+     * Register a file about to be sent with the upload cache.
+     *
+     * @return digest to compute while sending, or null if the hash is already
+     * known or caching is off
+     */
+    private MessageDigest trackUpload(File f, String repositoryPath) {
+        if (uploads == null) {
+            return null;
         }
-        return str;
+        UploadCache.FileKey key = new UploadCache.FileKey(f);
+        MessageDigest digest = uploadCache.getHash(key) == null ? uploadCache.newDigest() : null;
+        uploads.add(new PendingUpload(key, digest, repositoryPath));
+        return digest;
     }
 
-    private String detokenizeParameters(String str) {
-        Set<String> variableTokens = ActionUtils.getVariableNames(action);
-        int tokenCounter = 0;
-        for (String var : variableTokens) {
-            str = str.replaceAll(Pattern.quote("${" + (tokenCounter++) + "}"), Matcher.quoteReplacement("${" + var + "}"));
+    private void recordUploads() {
+        uploads.forEach(upload -> {
+            String hash = upload.digest != null
+                    ? uploadCache.recordHash(upload.key, upload.digest)
+                    : uploadCache.getHash(upload.key);
+            if (hash != null && upload.repositoryPath != null) {
+                uploadCache.recordRepositoryPath(hash, upload.repositoryPath);
+            }
+        });
+        String signature = getUploadSignature();
+        if (signature != null) {
+            uploadCache.recordCompleted(signature);
         }
-        return str;
+        uploads = null;
     }
 
-    private boolean parseCmdParam(char command, String param, int offset) throws ParseException {
-        switch (command) {
-            case 'F':
-                httpMethod = HttpMethod.POST;
-                httpMethodExplicitlySet = true;
-            case 'd':
-                Map<String, List<String>> vars = postVariables;
-                if (!httpMethodExplicitlySet) {
-                    httpMethod = HttpMethod.POST;
-                } else if (httpMethod != HttpMethod.POST) {
-                    vars = getVariables;
-                }
-                int equals = param.indexOf('=');
-                if (equals > -1) {
-                    String fieldName = detokenizeParameters(param.substring(0, equals));
-                    String value = equals < param.length() - 1 ? detokenizeParameters(param.substring(equals + 1)) : null;
-                    if (command == 'F' && value != null && value.startsWith("@")) {
-                        httpMethod = HttpMethod.POST;
-                        multipart = true;
-                    }
-                    if (!vars.containsKey(fieldName)) {
-                        vars.put(fieldName, new ArrayList<>());
+    /**
+     * Identifies an upload by method, URL, form fields and the content hash of
+     * each file.
+     *
+     * @return signature, or null if a file has not been hashed yet
+     */
+    private String getUploadSignature() {
+        StringBuilder signature = new StringBuilder(httpMethod.name()).append(' ').append(requestUrl);
+        if (httpMethod == HttpMethod.PUT) {
+            String hash = uploadCache.getHash(new UploadCache.FileKey(new File(putFile)));
+            if (hash == null) {
+                return null;
+            }
+            signature.append(" #").append(hash);
+            return signature.toString();
+        }
+        for (Map.Entry<String, List<String>> field : postVariables.entrySet()) {
+            for (String value : field.getValue()) {
+                signature.append('\n').append(field.getKey()).append('=');
+                if (value.startsWith("@")) {
+                    String hash = uploadCache.getHash(new UploadCache.FileKey(new File(value.substring(1))));
+                    if (hash == null) {
+                        return null;
                     }
-                    vars.get(fieldName).add(value);
+                    signature.append('#').append(hash);
                 } else {
-                    throw new ParseException(ApplicationState.getMessage(MISSING_NVP_FORM_ERROR), offset + 1);
-                }
-                return true;
-            case 'T':
-                httpMethod = HttpMethod.PUT;
-                multipart = false;
-                putFile = detokenizeParameters(param);
-                return true;
-            case 'X':
-                try {
-                    httpMethod = HttpMethod.valueOf(param.toUpperCase());
-                } catch (IllegalArgumentException ex) {
-                    throw new ParseException(ApplicationState.getMessage(UNKNOWN_METHOD_ERROR) + " " + param, offset + 1);
+                    signature.append(value);
                 }
-                return true;
-            case 'h':
-                String[] nvp = param.split(":\\s*");
-                if (nvp.length != 2) {
-                    throw new ParseException(ApplicationState.getMessage(MISSING_NVP_HEADER_ERROR), offset + 1);
-                }
-                requestHeaders.put(detokenizeParameters(nvp[0]), detokenizeParameters(nvp[1]));
-                return true;
-            case 'e':
-                requestHeaders.put("referer", detokenizeParameters(param));
-                return true;
-            case 'u':
-                // ignored parameterized options
-                return true;
-            case 'G':
-                httpMethodExplicitlySet = true;
-                httpMethod = HttpMethod.GET;
-            case 'S':
-            case '#':
-            case 'v':
-                //ignored no-parameter flags
-                return false;
-            default:
-                throw new ParseException(ApplicationState.getMessage(UNKNOWN_PARAMETER) + ": " + command, offset);
+            }
         }
+        return signature.toString();
     }
 
-    private void applyVariables(Map<String, String> variables) {
-        Set<String> variableTokens = ActionUtils.getVariableNames(action);
-        variableTokens.forEach((String originalName) -> {
-            String[] parts = originalName.split("\\|");
-            String var = parts[0];
-            String replaceVar = Pattern.quote("${" + originalName + "}");
-            String replace = variables.get(var) == null ? "" : variables.get(var);
-            URL = URL.replaceAll(replaceVar, Matcher.quoteReplacement(replace));
-            putFile = putFile.replaceAll(replaceVar, Matcher.quoteReplacement(replace));
-        });
-        applyMultiVariablesToMap(variables, postVariables);
-        applyMultiVariablesToMap(variables, getVariables);
-        applyVariablesToMap(variables, requestHeaders);
+    /**
+     * @return node created by the Sling POST servlet for a file field, or null
+     * if the URL is not a plain resource path
+     */
+    private String getRepositoryPath(String fieldName, File f) {
+        fieldName = getNodeName(fieldName, f);
+        if (fieldName.startsWith("/")) {
+            return fieldName;
+        }
+        String path;
+        try {
+            path = new URI(requestUrl).getPath();
+        } catch (URISyntaxException ex) {
+            return null;
+        }
+        if (path == null || path.isEmpty() || path.indexOf('.', path.lastIndexOf('/')) >= 0) {
+            // Selectors or extensions mean a servlet, not a resource, handles the post
+            return null;
+        }
+        if (fieldName.startsWith("./")) {
+            fieldName = fieldName.substring(2);
+        }
+        return (path.endsWith("/") ? path : path + "/") + fieldName;
     }
 
-    private void applyVariablesToMap(Map<String, String> variables, Map<String, String> target) {
-        Set<String> variableTokens = ActionUtils.getVariableNames(action);
-
-        Set removeSet = new HashSet<>();
-        Map<String, String> newValues = new HashMap<>();
-
-        target.forEach((paramName, paramValue) -> {
-            StringProperty paramNameProperty = new SimpleStringProperty(paramName);
-            variableTokens.forEach((String originalName) -> {
-                String[] variableNameParts = originalName.split("\\|");
-                String variableName = variableNameParts[0];
-                String variableNameMatchPattern = Pattern.quote("${" + originalName + "}");
-                String val = variables.get(variableName);
-                if (val == null) {
-                    val = "";
-                }
-                String variableValue = Matcher.quoteReplacement(val);
-                //----
-                String newParamValue = newValues.containsKey(paramNameProperty.get()) ? newValues.get(paramNameProperty.get()) : paramValue;
-                String newParamName = paramNameProperty.get().replaceAll(variableNameMatchPattern, variableValue);
-                paramNameProperty.set(newParamName);
-                newParamValue = newParamValue.replaceAll(variableNameMatchPattern, variableValue);
-                if (!newParamName.equals(paramName) || !newParamValue.equals(paramValue)) {
-                    removeSet.add(paramNameProperty.get());
-                    removeSet.add(paramName);
-                    newValues.put(newParamName, newParamValue);
-                }
-            });
-        });
-        target.keySet().removeAll(removeSet);
-        target.putAll(newValues);
+    /**
+     * A file field named "*" is stored under the file's own name.
+     */
+    private static String getNodeName(String fieldName, File f) {
+        return "*".equals(fieldName) ? f.getName() : fieldName;
     }
 
-    private void applyMultiVariablesToMap(Map<String, String> variables, Map<String, List<String>> target) {
-        Set<String> variableTokens = ActionUtils.getVariableNames(action);
-
-        Map<String, List<String>> newValues = new HashMap<>();
-        Set removeSet = new HashSet<>();
-
-        target.forEach((paramName, paramValues) -> {
-            StringProperty paramNameProperty = new SimpleStringProperty(paramName);
-            variableTokens.forEach((String originalName) -> {
-                String[] variableNameParts = originalName.split("\\|");
-                String variableName = variableNameParts[0];
-                String variableNameMatchPattern = Pattern.quote("${" + originalName + "}");
-                String val = variables.get(variableName);
-                if (val == null) {
-                    val = "";
-                }
-                String variableValue = Matcher.quoteReplacement(val);
-                String newParamName = paramNameProperty.get().replaceAll(variableNameMatchPattern, variableValue);
-                removeSet.add(paramNameProperty.get());
-                removeSet.add(paramName);
-                if (newValues.get(paramNameProperty.get()) == null) {
-                    newValues.put(paramNameProperty.get(), new ArrayList<>(paramValues.size()));
-                }
-                if (newValues.get(newParamName) == null) {
-                    newValues.put(newParamName, new ArrayList<>(paramValues.size()));
-                }
-                List<String> newParamValues = newValues.get(paramNameProperty.get());
-                for (int i = 0; i < paramValues.size(); i++) {
-                    String newParamValue = newParamValues != null && newParamValues.size() > i && newParamValues.get(i) != null ? newParamValues.get(i) : paramValues.get(i);
-
-                    // fix for removing JCR values (setting them to an empty
-                    // string deletes them from the JCR)
-                    if (null == newParamValue) {
-                        newParamValue = "";
-                    }
+    private String getCopyFromPath(String fieldName, File f) {
+        if (uploads == null || uploadCache.getPolicy() != UploadCache.Policy.COPY_FROM) {
+            return null;
+        }
+        String hash = uploadCache.getHash(new UploadCache.FileKey(f));
+        String target = getRepositoryPath(fieldName, f);
+        String source = hash == null ? null : uploadCache.getRepositoryPath(hash);
+        if (target == null || source == null || source.equals(target)) {
+            return null;
+        }
+        return source;
+    }
 
-                    newParamValue = newParamValue.replaceAll(variableNameMatchPattern, variableValue);
-                    if (newParamName.contains("/") && newParamValue.equals("@" + newParamName)) {
-                        // The upload name should actually be the file name, not the full path of the file.
-                        removeSet.add(newParamName);
-                        newValues.remove(newParamName);
-                        newParamName = newParamName.substring(newParamName.lastIndexOf("/") + 1);
-                        newValues.put(newParamName, newParamValues);
-                    }
-                    if (newValues.get(newParamName).size() == i) {
-                        newValues.get(newParamName).add(newParamValue);
-                    } else {
-                        newValues.get(newParamName).set(i, newParamValue);
-                    }
-                }
-                if (!paramNameProperty.get().equals(newParamName)) {
-                    newValues.remove(paramNameProperty.get());
+    public static List<String> splitByUnquotedSpaces(String str) {
+        return CommandTemplate.splitByUnquotedSpaces(str);
+    }
+
+    private void bindTemplate(Map<String, String> variables) {
+        StringBuilder buffer = new StringBuilder(128);
+        action = template.getAction();
+        httpMethod = template.getHttpMethod();
+        multipart = template.isMultipart();
+        URL = template.getUrlTemplate().bind(variables, buffer);
+        requestUrl = template.getRequestUrlTemplate().build(variables, buffer);
+        putFile = template.getPutFileTemplate().bind(variables, buffer);
+        bindMultiValues(template.getPostTemplates(), variables, postVariables, buffer);
+        template.getHeaderTemplates().forEach((name, value)
+                -> requestHeaders.put(name.bind(variables, buffer), value.bind(variables, buffer)));
+    }
+
+    private static void bindMultiValues(Map<TemplateString, List<TemplateString>> source, Map<String, String> variables, Map<String, List<String>> target, StringBuilder buffer) {
+        source.forEach((nameTemplate, valueTemplates) -> {
+            String name = nameTemplate.bind(variables, buffer);
+            List<String> values = new ArrayList<>(valueTemplates.size());
+            for (TemplateString valueTemplate : valueTemplates) {
+                // Missing values bind to an empty string rather than null, which
+                // is also how values are removed from the JCR
+                String value = valueTemplate.bind(variables, buffer);
+                if (isUploadOfOwnPath(name, value)) {
+                    // The upload name should actually be the file name, not the full path of the file.
+                    name = name.substring(name.lastIndexOf('/') + 1);
                 }
-                paramNameProperty.set(newParamName);
-            });
+                values.add(value);
+            }
+            target.computeIfAbsent(name, n -> new ArrayList<>(values.size())).addAll(values);
         });
-        target.keySet().removeAll(removeSet);
-        target.putAll(newValues);
+    }
+
+    private static boolean isUploadOfOwnPath(String name, String value) {
+        return name.indexOf('/') >= 0
+                && value.length() == name.length() + 1
+                && value.charAt(0) == '@'
+                && value.endsWith(name);
     }
 }
@@ -16,9 +16,9 @@
 package com.adobe.ags.curly.controller;
 
 import com.adobe.ags.curly.ApplicationState;
-import com.adobe.ags.curly.ConnectionManager;
 import com.adobe.ags.curly.CurlyApp;
 import com.adobe.ags.curly.model.ActionUtils;
+import com.adobe.ags.curly.model.TaskRunner;
 import com.adobe.ags.curly.xml.Action;
 import com.adobe.ags.curly.xml.ErrorBehavior;
 import com.sun.javafx.collections.ObservableListWrapper;
@@ -158,8 +158,7 @@ public class AppController {
     void singleShotClicked(ActionEvent event) {
         List<Map<String, String>> blankRow = new ArrayList<>();
         blankRow.add(new HashMap<>());
-        BatchRunner runner = new BatchRunner(loginHandler, concurencyChoice.getValue(), getActions(), blankRow, defaults, defaults.keySet());
-        CurlyApp.openActivityMonitor(runner);
+        CurlyApp.openActivityMonitor(createRunner(blankRow));
     }
 
     @FXML
@@ -170,8 +169,16 @@ public class AppController {
         } else {
             highlightedRows.stream().map(batchDataTable.getItems()::get).forEach(selectedItems::add);
         }
-        BatchRunner runner = new BatchRunner(loginHandler, concurencyChoice.getValue(), getActions(), selectedItems, defaults, defaults.keySet());
-        CurlyApp.openActivityMonitor(runner);
+        CurlyApp.openActivityMonitor(createRunner(selectedItems));
+    }
+
+    private TaskRunner createRunner(List<Map<String, String>> rows) {
+        List<String> urlBases = loginHandler.getUrlBases();
+        if (urlBases.size() > 1) {
+            return new MultiHostRunner(loginHandler, urlBases, concurencyChoice.getValue(), getActions(), rows, defaults, defaults.keySet());
+        } else {
+            return new BatchRunner(loginHandler, concurencyChoice.getValue(), getActions(), rows, defaults, defaults.keySet());
+        }
     }
 
     @FXML
@@ -241,8 +248,6 @@ public class AppController {
 
         List<Integer> oneThroughNine = IntStream.range(1, 10).boxed().collect(Collectors.toList());
         concurencyChoice.setItems(new ObservableListWrapper<>(oneThroughNine));
-        concurencyChoice.selectionModelProperty().addListener((prop, oldValue, newValue)
-                -> ConnectionManager.getInstance().resetConnectionManager(newValue.getSelectedItem()));
         Platform.runLater(() -> concurencyChoice.getSelectionModel().selectFirst());
 
         batchSize.textProperty().addListener((property, oldValue, newValue) -> updateBatchSize(newValue));
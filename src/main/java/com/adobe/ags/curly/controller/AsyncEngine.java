@@ -0,0 +1,346 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import com.adobe.ags.curly.ConnectionManager;
+import com.adobe.ags.curly.LoginTokens;
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.CookieManager;
+import java.net.CookiePolicy;
+import java.net.HttpCookie;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.net.http.HttpResponse.BodyHandlers;
+import java.net.http.HttpTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.Credentials;
+import org.apache.http.client.CredentialsProvider;
+import org.apache.http.conn.ssl.TrustSelfSignedStrategy;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.entity.ByteArrayEntity;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.message.BasicStatusLine;
+import org.apache.http.ssl.SSLContextBuilder;
+
+/**
+ * Non-blocking alternative to the pooled HttpClient 4 connections, built on
+ * the JDK HTTP client. Requests are sent asynchronously and rows chain their
+ * actions on the completions, so a few threads keep many requests in flight.
+ * Responses are adapted to HttpClient 4 responses so that ActionResult
+ * classifies them exactly as before. Multipart uploads cannot be expressed as
+ * a JDK body publisher without buffering, so they still run on a small pool
+ * of blocking workers.
+ * <p>
+ * With HTTP2 set the client offers HTTP/2 (ALPN over TLS, h2c upgrade in the
+ * clear) so that concurrent requests share a few multiplexed connections.
+ * Servers which do not agree are spoken to with HTTP/1.1. If an exchange
+ * fails and a probe of the host shows that HTTP/2 fails where HTTP/1.1
+ * works, the engine pins itself to HTTP/1.1 and resends the request if it is
+ * idempotent.
+ */
+public class AsyncEngine implements Closeable {
+
+    public static int THREADS = Integer.getInteger("curly.asyncThreads", 4);
+    public static boolean HTTP2 = Boolean.getBoolean("curly.http2");
+    static final HttpVersion HTTP_2 = new HttpVersion(2, 0);
+    private static final Set<String> IDEMPOTENT_METHODS = Set.of("GET", "HEAD", "OPTIONS", "PUT", "DELETE");
+
+    private final String urlBase;
+    private final CredentialsProvider creds;
+    private final ExecutorService executor;
+    private final ExecutorService blockingExecutor;
+    private final HttpClient client;
+    private final String authorization;
+    private final CookieManager cookieManager = new CookieManager(null, CookiePolicy.ACCEPT_ALL);
+    private volatile boolean http2Failed = false;
+    private CompletableFuture<Boolean> http2Check;
+    private volatile int loginGeneration = 0;
+    private CompletableFuture<Integer> relogin;
+    private long failedLoginAt = 0;
+
+    public AsyncEngine(CredentialsProvider creds, String urlBase, int blockingThreads) {
+        this(creds, urlBase, blockingThreads, HTTP2 ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1);
+    }
+
+    public AsyncEngine(CredentialsProvider creds, String urlBase, int blockingThreads, HttpClient.Version version) {
+        this.creds = creds;
+        this.urlBase = urlBase;
+        executor = Executors.newFixedThreadPool(Math.max(1, THREADS), daemonThreads("Async HTTP"));
+        blockingExecutor = Executors.newFixedThreadPool(Math.max(1, blockingThreads), daemonThreads("Blocking HTTP"));
+        HttpClient.Builder builder = HttpClient.newBuilder()
+                .version(version)
+                .executor(executor)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .cookieHandler(cookieManager);
+        try {
+            builder.sslContext(new SSLContextBuilder().loadTrustMaterial(new TrustSelfSignedStrategy()).build());
+        } catch (GeneralSecurityException ex) {
+            Logger.getLogger(AsyncEngine.class.getName()).log(Level.SEVERE, null, ex);
+        }
+        client = builder.build();
+        Credentials userCreds = creds.getCredentials(AuthScope.ANY);
+        if (!ConnectionManager.USE_LOGIN_COOKIE && userCreds != null) {
+            String token = userCreds.getUserPrincipal().getName() + ":" + userCreds.getPassword();
+            authorization = "Basic " + Base64.getEncoder().encodeToString(token.getBytes(StandardCharsets.UTF_8));
+        } else {
+            authorization = null;
+        }
+    }
+
+    private static ThreadFactory daemonThreads(String name) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread t = new Thread(r, name + " " + counter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        };
+    }
+
+    /**
+     * Log in with the login form, the same way as
+     * {@link ConnectionManager#performLogin}, unless there is a valid login
+     * token for the host and user already.
+     *
+     * @return response code of the login, or -1 if no login is needed
+     */
+    public CompletableFuture<Integer> login() {
+        Credentials userCreds = creds.getCredentials(AuthScope.ANY);
+        if (!ConnectionManager.USE_LOGIN_COOKIE || userCreds == null) {
+            return CompletableFuture.completedFuture(-1);
+        }
+        List<Cookie> token = LoginTokens.getInstance().get(urlBase, userCreds.getUserPrincipal().getName(), userCreds.getPassword());
+        if (token != null) {
+            URI host = URI.create(urlBase);
+            for (Cookie cookie : token) {
+                HttpCookie httpCookie = new HttpCookie(cookie.getName(), cookie.getValue());
+                httpCookie.setPath(cookie.getPath());
+                httpCookie.setSecure(cookie.isSecure());
+                httpCookie.setVersion(0);
+                cookieManager.getCookieStore().add(host, httpCookie);
+            }
+            return CompletableFuture.completedFuture(-1);
+        }
+        return postLogin(userCreds);
+    }
+
+    private CompletableFuture<Integer> postLogin(Credentials userCreds) {
+        String form = "j_validate=true"
+                + "&j_username=" + URLEncoder.encode(userCreds.getUserPrincipal().getName(), StandardCharsets.UTF_8)
+                + "&j_password=" + URLEncoder.encode(userCreds.getPassword(), StandardCharsets.UTF_8);
+        HttpRequest login = HttpRequest.newBuilder(URI.create(urlBase + ConnectionManager.LOGIN_URL))
+                .header("Content-Type", "application/x-www-form-urlencoded")
+                .POST(BodyPublishers.ofString(form))
+                .build();
+        return client.sendAsync(login, BodyHandlers.discarding()).thenApply(java.net.http.HttpResponse::statusCode);
+    }
+
+    /**
+     * Log in again once the server no longer accepts the login token. Only
+     * the first request to find the token expired logs in; requests which
+     * were sent with the same token get the same login to wait for. Only an
+     * accepted login starts a new generation; after a failed one, requests
+     * within {@link ConnectionManager#LOGIN_BACKOFF} get the failed login
+     * instead of a new one.
+     *
+     * @param expiredGeneration login generation the request was sent with
+     * @return completes once the new login is in place or has failed
+     */
+    synchronized CompletableFuture<Integer> relogin(int expiredGeneration) {
+        if (expiredGeneration != loginGeneration) {
+            return CompletableFuture.completedFuture(-1);
+        }
+        if (relogin != null && (!relogin.isDone()
+                || System.currentTimeMillis() - failedLoginAt < ConnectionManager.LOGIN_BACKOFF)) {
+            return relogin;
+        }
+        Credentials userCreds = creds.getCredentials(AuthScope.ANY);
+        if (userCreds == null) {
+            return CompletableFuture.completedFuture(-1);
+        }
+        LoginTokens.getInstance().invalidate(urlBase, userCreds.getUserPrincipal().getName());
+        relogin = postLogin(userCreds).whenComplete((status, ex) -> loginDone(ex == null ? status : -1));
+        return relogin;
+    }
+
+    private synchronized void loginDone(int status) {
+        if (ConnectionManager.isLoginAccepted(status)) {
+            loginGeneration++;
+            failedLoginAt = 0;
+        } else {
+            Logger.getLogger(AsyncEngine.class.getName()).log(Level.WARNING, "Login to {0} failed with {1}", new Object[]{urlBase, status});
+            failedLoginAt = System.currentTimeMillis();
+        }
+    }
+
+    /**
+     * Send a request. If the answer says the login expired, the engine logs
+     * in again and the request is sent once more.
+     *
+     * @param request request, the session's authorization is added here
+     * @param keepBody true if the response body is needed for classifying the
+     * result; otherwise it is discarded as it arrives
+     * @return response as an HttpClient 4 response
+     */
+    public CompletableFuture<HttpResponse> send(HttpRequest.Builder request, boolean keepBody) {
+        if (authorization != null) {
+            request.setHeader("Authorization", authorization);
+        }
+        if (http2Failed) {
+            request.version(HttpClient.Version.HTTP_1_1);
+        }
+        HttpRequest built = request.build();
+        CompletableFuture<HttpResponse> response = sendOnce(built, keepBody);
+        if (client.version() != HttpClient.Version.HTTP_2 || http2Failed) {
+            return response;
+        }
+        return response.handle((r, ex) -> {
+            if (ex == null) {
+                return CompletableFuture.completedFuture(r);
+            }
+            Throwable cause = ex instanceof CompletionException ? ex.getCause() : ex;
+            if (!(cause instanceof IOException) || cause instanceof ConnectException || cause instanceof HttpTimeoutException) {
+                // HTTP/1.1 would fail the same way
+                return CompletableFuture.<HttpResponse>failedFuture(cause);
+            }
+            return checkHttp2().thenCompose(broken -> {
+                // The failed request may have reached the server, so only
+                // requests which can safely be sent twice are resent
+                if (!broken || !IDEMPOTENT_METHODS.contains(built.method())) {
+                    return CompletableFuture.<HttpResponse>failedFuture(cause);
+                }
+                return sendOnce(request.version(HttpClient.Version.HTTP_1_1).build(), keepBody);
+            });
+        }).thenCompose(Function.identity());
+    }
+
+    /**
+     * Find out whether a failed exchange was the fault of HTTP/2: the host is
+     * asked for its root page with HTTP/2 and, if that fails too, with
+     * HTTP/1.1. Only if HTTP/1.1 gets an answer where HTTP/2 did not is the
+     * engine pinned to HTTP/1.1. Requests failing at the same time share one
+     * check.
+     *
+     * @return completes with true if HTTP/2 is broken for the host
+     */
+    synchronized CompletableFuture<Boolean> checkHttp2() {
+        if (http2Failed) {
+            return CompletableFuture.completedFuture(true);
+        }
+        if (http2Check != null && !http2Check.isDone()) {
+            return http2Check;
+        }
+        HttpRequest.Builder probe = HttpRequest.newBuilder(URI.create(urlBase + "/"))
+                .method("HEAD", BodyPublishers.noBody());
+        if (authorization != null) {
+            probe.setHeader("Authorization", authorization);
+        }
+        http2Check = client.sendAsync(probe.build(), BodyHandlers.discarding())
+                .handle((r, ex) -> ex == null)
+                .thenCompose(http2Works -> http2Works
+                        ? CompletableFuture.completedFuture(false)
+                        : client.sendAsync(probe.version(HttpClient.Version.HTTP_1_1).build(), BodyHandlers.discarding())
+                                .handle((r, ex) -> ex == null))
+                .thenApply(broken -> {
+                    if (broken) {
+                        Logger.getLogger(AsyncEngine.class.getName()).log(Level.WARNING, "HTTP/2 to {0} fails where HTTP/1.1 works, falling back to HTTP/1.1", urlBase);
+                        http2Failed = true;
+                    }
+                    return broken;
+                });
+        return http2Check;
+    }
+
+    private CompletableFuture<HttpResponse> sendOnce(HttpRequest request, boolean keepBody) {
+        int generation = loginGeneration;
+        return exchange(request, keepBody).thenCompose(response -> {
+            if (!ConnectionManager.isSessionExpired(response.statusCode(), response.uri().toString())) {
+                return CompletableFuture.completedFuture(toHttpResponse(response));
+            }
+            // Cookies are added by the cookie handler, so the same request
+            // picks up the new login token; if the login failed, the expired
+            // answer is returned as it is
+            return relogin(generation)
+                    .thenCompose(status -> loginGeneration == generation
+                            ? CompletableFuture.completedFuture(response)
+                            : exchange(request, keepBody))
+                    .thenApply(AsyncEngine::toHttpResponse);
+        });
+    }
+
+    private CompletableFuture<java.net.http.HttpResponse<?>> exchange(HttpRequest request, boolean keepBody) {
+        if (keepBody) {
+            return client.sendAsync(request, BodyHandlers.ofByteArray()).thenApply(response -> response);
+        } else {
+            return client.sendAsync(request, BodyHandlers.discarding()).thenApply(response -> response);
+        }
+    }
+
+    /**
+     * @return true if HTTP/2 was offered but an exchange failed in HTTP/2,
+     * so all further requests use HTTP/1.1
+     */
+    public boolean isHttp2Disabled() {
+        return http2Failed;
+    }
+
+    /**
+     * @return pool for requests which have to block, such as multipart uploads
+     */
+    public ExecutorService getBlockingExecutor() {
+        return blockingExecutor;
+    }
+
+    static HttpResponse toHttpResponse(java.net.http.HttpResponse<?> response) {
+        int code = response.statusCode();
+        String reason = EnglishReasonPhraseCatalog.INSTANCE.getReason(code, Locale.ENGLISH);
+        HttpVersion version = response.version() == HttpClient.Version.HTTP_2 ? HTTP_2 : HttpVersion.HTTP_1_1;
+        BasicHttpResponse adapted = new BasicHttpResponse(new BasicStatusLine(version, code, reason == null ? "" : reason));
+        response.headers().map().forEach((name, values) -> values.forEach(value -> adapted.addHeader(name, value)));
+        if (response.body() instanceof byte[]) {
+            adapted.setEntity(new ByteArrayEntity((byte[]) response.body()));
+        }
+        return adapted;
+    }
+
+    @Override
+    public void close() {
+        executor.shutdownNow();
+        blockingExecutor.shutdownNow();
+    }
+}
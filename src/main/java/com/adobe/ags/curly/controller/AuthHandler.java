@@ -16,36 +16,55 @@
 package com.adobe.ags.curly.controller;
 
 import com.adobe.ags.curly.ApplicationState;
-import com.adobe.ags.curly.ConnectionManager;
+import com.adobe.ags.curly.ClientSession;
 import com.adobe.ags.curly.model.Login;
 import java.io.IOException;
 import java.net.InetAddress;
-import java.net.MalformedURLException;
 import java.net.URL;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import java.util.regex.Pattern;
 import javafx.application.Platform;
 import javafx.beans.property.BooleanProperty;
 import javafx.beans.property.StringProperty;
 import javafx.beans.value.ObservableValue;
-import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
 import org.apache.http.client.CredentialsProvider;
-import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpHead;
+import org.apache.http.impl.EnglishReasonPhraseCatalog;
 import org.apache.http.impl.client.BasicCredentialsProvider;
-import org.apache.http.impl.client.CloseableHttpClient;
 
 import static com.adobe.ags.curly.Messages.*;
 
 public class AuthHandler {
 
-    private static final String TEST_PAGE = "/content.json";
+    /**
+     * Page requested with HEAD to test a connection; it should need a login
+     * and be cheap to serve.
+     */
+    public static String TEST_PAGE = System.getProperty("curly.testPage", "/content.json");
+    /**
+     * Milliseconds a host name looked up by the connection test is trusted.
+     */
+    public static long DNS_CACHE_TTL = Long.getLong("curly.dnsCacheTtl", 60000);
+    private static final Pattern HOST_SEPARATOR = Pattern.compile("[,\\s]+");
 
     public final Login model;
 
@@ -65,24 +84,82 @@ public class AuthHandler {
         model.statusMessageProperty().set(ApplicationState.getMessage(INCOMPLETE_FIELDS));
         model.loginConfirmedProperty().set(false);
 
+        testExecutor.setRemoveOnCancelPolicy(true);
     }
 
+    /**
+     * @return URL of the first host
+     */
     public String getUrlBase() {
+        List<String> urlBases = getUrlBases();
+        return urlBases.isEmpty() ? toUrlBase("") : urlBases.get(0);
+    }
+
+    /**
+     * The host field may name several hosts separated by commas or spaces,
+     * such as an author and its publishers, to run every row against each of
+     * them.
+     *
+     * @return URL of each host, in the order given
+     */
+    public List<String> getUrlBases() {
+        List<String> urlBases = new ArrayList<>();
+        String hosts = model.hostProperty().get();
+        if (hosts != null) {
+            for (String host : HOST_SEPARATOR.split(hosts.trim())) {
+                if (!host.isEmpty()) {
+                    urlBases.add(toUrlBase(host));
+                }
+            }
+        }
+        return urlBases;
+    }
+
+    private String toUrlBase(String host) {
         StringBuilder builder = new StringBuilder();
         if (model.sslProperty().get()) {
             builder.append("https://");
         } else {
             builder.append("http://");
         }
-        builder.append(model.hostProperty().get());
+        builder.append(host);
         return builder.toString();
     }
 
-    public CloseableHttpClient getAuthenticatedClient() {
-        CredentialsProvider creds = getCredentialsProvider();
-        CloseableHttpClient connection = ConnectionManager.getInstance().getAuthenticatedClient(creds);
-        ConnectionManager.performLogin(connection, creds, getUrlBase());
-        return connection;
+    /**
+     * Open the connections for a batch run.
+     *
+     * @param concurrency number of workers of the run
+     * @return session to close when the run is over
+     */
+    public ClientSession openSession(int concurrency) {
+        return openSession(getUrlBase(), concurrency);
+    }
+
+    /**
+     * Open the connections to one host of a batch run.
+     *
+     * @param urlBase host to connect to
+     * @param concurrency number of workers for this host
+     * @return session to close when the run is over
+     */
+    public ClientSession openSession(String urlBase, int concurrency) {
+        return new ClientSession(getCredentialsProvider(), urlBase, concurrency);
+    }
+
+    /**
+     * Open the asynchronous engine for a batch run.
+     *
+     * @param blockingThreads workers for requests which cannot run
+     * asynchronously
+     * @return engine to close when the run is over
+     */
+    public AsyncEngine openAsyncEngine(int blockingThreads) {
+        return openAsyncEngine(getUrlBase(), blockingThreads);
+    }
+
+    public AsyncEngine openAsyncEngine(String urlBase, int blockingThreads) {
+        return new AsyncEngine(getCredentialsProvider(), urlBase, blockingThreads);
     }
 
     private CredentialsProvider getCredentialsProvider() {
@@ -96,22 +173,37 @@ public class AuthHandler {
 
     /**
      * This allows connection testing to occur atomically without gumming-up the
-     * user experience
+     * user experience. Tests run one at a time; a change to the fields cancels
+     * the test waiting to run and aborts the request of the one running.
      */
     AtomicInteger activityCounter = new AtomicInteger();
-    ScheduledThreadPoolExecutor testExecutor = new ScheduledThreadPoolExecutor(10);
+    ScheduledThreadPoolExecutor testExecutor = new ScheduledThreadPoolExecutor(1);
+    ScheduledFuture<?> scheduledTest;
+    volatile HttpHead runningProbe;
+    Map<String, ResolvedHost> dnsCache = new ConcurrentHashMap<>();
+    // Only used by the test thread: one session per host, for as long as the
+    // user name and password stay the same
+    Map<String, ClientSession> probeSessions = new HashMap<>();
+    String probeUser;
+    String probePassword;
 
-    private void triggerLoginTest(ObservableValue v, Object oldVal, Object newVal) {
+    private synchronized void triggerLoginTest(ObservableValue v, Object oldVal, Object newVal) {
         final int testValue = activityCounter.incrementAndGet();
-        testExecutor.schedule(() -> {
-            if (activityCounter.get() == testValue) {
-                loginTest();
-            }
-        }, 500, TimeUnit.MILLISECONDS);
+        if (scheduledTest != null) {
+            scheduledTest.cancel(false);
+        }
+        HttpHead probe = runningProbe;
+        if (probe != null) {
+            probe.abort();
+        }
+        scheduledTest = testExecutor.schedule(() -> loginTest(testValue), 500, TimeUnit.MILLISECONDS);
     }
 
-    private void loginTest() {
-        CloseableHttpClient client = null;
+    private boolean isCurrent(int testValue) {
+        return activityCounter.get() == testValue;
+    }
+
+    private void loginTest(int testValue) {
         try {
             if (!model.requiredFieldsPresentProperty().get()) {
                 Platform.runLater(() -> {
@@ -120,54 +212,139 @@ public class AuthHandler {
                 });
                 return;
             }
-
-            String url = getUrlBase() + TEST_PAGE;
-            URL testUrl = new URL(url);
-            InetAddress address = InetAddress.getByName(testUrl.getHost());
-            if (address == null || isDnsRedirect(address)) {
-                throw new UnknownHostException("Unknown host " + testUrl.getHost());
-            }
-
             Platform.runLater(() -> {
                 model.loginConfirmedProperty().set(false);
                 model.statusMessageProperty().set(ApplicationState.getMessage(ATTEMPTING_CONNECTION));
             });
-            client = getAuthenticatedClient();
-            HttpGet loginTest = new HttpGet(url);
-            HttpResponse response = client.execute(loginTest);
-            StatusLine responseStatus = response.getStatusLine();
-
-            if (responseStatus.getStatusCode() >= 200 && responseStatus.getStatusCode() < 300) {
-                Platform.runLater(() -> {
-                    model.loginConfirmedProperty().set(true);
-                    model.statusMessageProperty().set(ApplicationState.getMessage(CONNECTION_SUCCESSFUL));
-                });
-            } else {
-                Platform.runLater(() -> {
-                    model.loginConfirmedProperty().set(false);
-                    model.statusMessageProperty().set(ApplicationState.getMessage(CONNECTION_ERROR) + responseStatus.getReasonPhrase() + " (" + responseStatus.getStatusCode() + ")");
-                });
+            String failure = probe(testValue);
+            if (!isCurrent(testValue)) {
+                return;
             }
-        } catch (MalformedURLException | IllegalArgumentException | UnknownHostException ex) {
-            Logger.getLogger(AuthHandler.class.getName()).log(Level.SEVERE, null, ex);
             Platform.runLater(() -> {
-                model.statusMessageProperty().set(ApplicationState.getMessage(CONNECTION_ERROR) + ex.getMessage());
-                model.loginConfirmedProperty().set(false);
+                model.loginConfirmedProperty().set(failure == null);
+                model.statusMessageProperty().set(failure == null
+                        ? ApplicationState.getMessage(CONNECTION_SUCCESSFUL)
+                        : ApplicationState.getMessage(CONNECTION_ERROR) + failure);
             });
         } catch (Throwable ex) {
+            if (!isCurrent(testValue)) {
+                // Aborted or overtaken by a newer test
+                return;
+            }
             Logger.getLogger(AuthHandler.class.getName()).log(Level.SEVERE, null, ex);
             Platform.runLater(() -> {
                 model.statusMessageProperty().set(ApplicationState.getMessage(CONNECTION_ERROR) + ex.getMessage());
                 model.loginConfirmedProperty().set(false);
             });
-        } finally {
-            if (client != null) {
-                try {
-                    client.close();
-                } catch (IOException ex) {
-                    Logger.getLogger(AuthHandler.class.getName()).log(Level.SEVERE, null, ex);
-                }
+        }
+    }
+
+    /**
+     * Test the connection to every host with the current fields, the same way
+     * as the test run when the fields change, and wait for the outcome.
+     *
+     * @return null if every host accepted the login and the test page,
+     * otherwise what failed
+     * @throws Exception if a host could not be reached
+     */
+    public String testConnection() throws Exception {
+        int testValue = activityCounter.get();
+        try {
+            return testExecutor.submit(() -> probe(testValue)).get();
+        } catch (ExecutionException ex) {
+            throw ex.getCause() instanceof Exception ? (Exception) ex.getCause() : ex;
+        }
+    }
+
+    /**
+     * Runs on the test thread only.
+     *
+     * @return null if every host is fine, otherwise what failed
+     * @throws CancellationException if the fields changed in the meantime
+     */
+    private String probe(int testValue) throws IOException {
+        String user = model.userNameProperty().get();
+        String password = model.passwordProperty().get();
+        if (!Objects.equals(user, probeUser) || !Objects.equals(password, probePassword)) {
+            // Sessions logged in with other credentials prove nothing now
+            probeSessions.values().forEach(ClientSession::close);
+            probeSessions.clear();
+            probeUser = user;
+            probePassword = password;
+        }
+        List<String> urlBases = getUrlBases();
+        probeSessions.entrySet().removeIf(entry -> {
+            if (!urlBases.contains(entry.getKey())) {
+                entry.getValue().close();
+                return true;
             }
+            return false;
+        });
+        for (String urlBase : urlBases) {
+            String url = urlBase + TEST_PAGE;
+            URL testUrl = new URL(url);
+            InetAddress address = resolve(testUrl.getHost());
+            if (address == null || isDnsRedirect(address)) {
+                throw new UnknownHostException("Unknown host " + testUrl.getHost());
+            }
+            checkCurrent(testValue);
+
+            String failedHost = urlBases.size() > 1 ? urlBase + " " : "";
+            ClientSession session = probeSessions.computeIfAbsent(urlBase, host -> openSession(host, 1));
+            // Reuses the session's login, or a login token of the same user
+            // and password; only without either is there a login request, so
+            // a wrong password is still reported
+            int status = session.login();
+            if (status >= 400) {
+                String reason = EnglishReasonPhraseCatalog.INSTANCE.getReason(status, Locale.ENGLISH);
+                return failedHost + (reason == null ? "" : reason) + " (" + status + ")";
+            }
+
+            HttpHead probe = new HttpHead(url);
+            runningProbe = probe;
+            checkCurrent(testValue);
+            StatusLine responseStatus;
+            try (CloseableHttpResponse response = session.getClient().execute(probe)) {
+                responseStatus = response.getStatusLine();
+            } finally {
+                runningProbe = null;
+            }
+
+            if (responseStatus.getStatusCode() < 200 || responseStatus.getStatusCode() >= 300) {
+                return failedHost + responseStatus.getReasonPhrase() + " (" + responseStatus.getStatusCode() + ")";
+            }
+        }
+        return null;
+    }
+
+    private void checkCurrent(int testValue) {
+        if (!isCurrent(testValue)) {
+            throw new CancellationException();
+        }
+    }
+
+    /**
+     * Look up a host once per host name and {@link #DNS_CACHE_TTL}, instead
+     * of on every test.
+     */
+    private InetAddress resolve(String host) throws UnknownHostException {
+        long now = System.currentTimeMillis();
+        ResolvedHost resolved = dnsCache.get(host);
+        if (resolved == null || now - resolved.resolvedAt > DNS_CACHE_TTL) {
+            resolved = new ResolvedHost(InetAddress.getByName(host), now);
+            dnsCache.put(host, resolved);
+        }
+        return resolved.address;
+    }
+
+    private static class ResolvedHost {
+
+        final InetAddress address;
+        final long resolvedAt;
+
+        ResolvedHost(InetAddress address, long resolvedAt) {
+            this.address = address;
+            this.resolvedAt = resolvedAt;
         }
     }
 
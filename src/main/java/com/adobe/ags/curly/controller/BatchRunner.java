@@ -16,17 +16,29 @@
 package com.adobe.ags.curly.controller;
 
 import com.adobe.ags.curly.ApplicationState;
+import com.adobe.ags.curly.ClientSession;
+import com.adobe.ags.curly.PoolStatistics;
 import com.adobe.ags.curly.xml.Action;
+import com.adobe.ags.curly.model.ActionGroupRunnerResult;
+import com.adobe.ags.curly.model.ActionResult;
 import com.adobe.ags.curly.model.BatchRunnerResult;
 import com.adobe.ags.curly.model.RunnerResult;
 import com.adobe.ags.curly.model.TaskRunner;
+import com.adobe.ags.curly.xml.ErrorBehavior;
 import java.text.ParseException;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ArrayBlockingQueue;
+import java.util.SortedMap;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
@@ -36,20 +48,82 @@ import javafx.beans.property.StringProperty;
 import org.apache.http.impl.client.CloseableHttpClient;
 
 public class BatchRunner implements TaskRunner {
+    /**
+     * Run rows on the asynchronous engine instead of one blocked thread per
+     * row; ASYNC_ROWS then limits the rows in flight instead of the
+     * concurrency setting, which only sizes the pool for multipart uploads.
+     * Turning on AsyncEngine.HTTP2 implies the asynchronous engine, since the
+     * pooled HttpClient 4 connections only speak HTTP/1.1.
+     */
+    public static boolean ASYNC = Boolean.getBoolean("curly.async");
+    public static int ASYNC_ROWS = Integer.getInteger("curly.asyncRows", 200);
+    /**
+     * Open concurrency connections to the host, including TLS handshakes and
+     * the login, before the first row starts.
+     */
+    public static boolean PREWARM = Boolean.parseBoolean(System.getProperty("curly.prewarm", "true"));
+    /**
+     * Rows read from the source ahead of the workers. Reading waits once this
+     * many rows are queued, so the rows of a large source are never all in
+     * memory at once.
+     */
+    public static int QUEUED_ROWS = Integer.getInteger("curly.queuedRows", 100);
+    /**
+     * Run each row on its own virtual thread, with the concurrency setting
+     * enforced by a semaphore rather than by the size of a pool, so that
+     * hundreds of rows can block in requests and delays cheaply. Virtual
+     * threads need Java 21; on older versions each row gets a platform thread
+     * instead.
+     */
+    public static boolean VIRTUAL_THREADS = Boolean.getBoolean("curly.virtualThreads");
     BatchRunnerResult result;
     BlockingQueue<Runnable> tasks;
-    ThreadPoolExecutor executor;
+    ExecutorService executor;
     int concurrency;
-    ThreadLocal<CloseableHttpClient> clientThread;
+    AuthHandler auth;
+    String urlBase;
+    ClientSession session;
+    AsyncEngine engine;
+    Semaphore rowsInFlight;
     Runnable buildWorkerPool;
+    UploadCache uploadCache = new UploadCache();
+    UploadPrefetcher prefetcher;
+    PoolStatistics poolStatistics = new PoolStatistics();
 
-    public BatchRunner(AuthHandler auth, int concurrency, List<Action> actions, List<Map<String, String>> batchData, Map<String, StringProperty> defaultValues, Set<String> displayColumns) {
-        clientThread = ThreadLocal.withInitial(auth::getAuthenticatedClient);
-        result = new BatchRunnerResult();
-        tasks = new ArrayBlockingQueue<>(batchData.size());
+    /**
+     * Runner for a batch. The rows are read lazily and only a few at a time
+     * are waiting to be sent, so the source may produce them on demand. A
+     * Collection is read twice: every row is validated before the first
+     * request, and with the HALT error behavior nothing is sent if any row is
+     * invalid. Any other Iterable is read only once, so it may be a one-shot
+     * source such as a large file; each row is then validated as it is
+     * queued, and HALT stops the run at the first invalid row after the rows
+     * before it were sent. The result of every row is kept for display, so
+     * the results still grow with the number of rows.
+     */
+    public BatchRunner(AuthHandler auth, int concurrency, List<Action> actions, Iterable<Map<String, String>> batchData, Map<String, StringProperty> defaultValues, Set<String> displayColumns) {
+        this(auth, auth.getUrlBase(), new BatchRunnerResult(), concurrency, actions, batchData, defaultValues, displayColumns);
+    }
+
+    /**
+     * Runner for one host of a multi-host run, with its own session, pool and
+     * workers. Results are named after the host.
+     */
+    public BatchRunner(AuthHandler auth, String urlBase, int concurrency, List<Action> actions, Iterable<Map<String, String>> batchData, Map<String, StringProperty> defaultValues, Set<String> displayColumns) {
+        this(auth, urlBase, new BatchRunnerResult(urlBase), concurrency, actions, batchData, defaultValues, displayColumns);
+    }
+
+    private BatchRunner(AuthHandler auth, String urlBase, BatchRunnerResult result, int concurrency, List<Action> actions, Iterable<Map<String, String>> batchData, Map<String, StringProperty> defaultValues, Set<String> displayColumns) {
+        this.auth = auth;
+        this.urlBase = urlBase;
+        this.result = result;
+        // Bounded by rowsInFlight instead, so the executor never rejects a row
+        tasks = new LinkedBlockingQueue<>();
         this.concurrency = concurrency;
-        defaultValues.put("server", new ReadOnlyStringWrapper(auth.getUrlBase()));
-        buildWorkerPool = ()->buildTasks(actions, batchData, defaultValues, displayColumns);
+        defaultValues.put("server", new ReadOnlyStringWrapper(urlBase));
+        // Other hosts of the same run put their own server value
+        Map<String, StringProperty> hostDefaults = new HashMap<>(defaultValues);
+        buildWorkerPool = ()->buildTasks(actions, batchData, hostDefaults, displayColumns);
     }
     
     @Override
@@ -57,50 +131,224 @@ public class BatchRunner implements TaskRunner {
         return result;
     }
 
+    /**
+     * @return connection pool statistics, sampled while the run is active
+     */
+    public PoolStatistics getPoolStatistics() {
+        return poolStatistics;
+    }
+
     @Override
     public void run() {
+        ApplicationState.getInstance().runningProperty().set(true);
+        execute();
+    }
+
+    /**
+     * Run the batch without resetting the running flag, so that a halt from
+     * another host of the same run is respected.
+     */
+    void execute() {
         try {
-            ApplicationState.getInstance().runningProperty().set(true);
-            executor = new ThreadPoolExecutor(concurrency, concurrency, 1, TimeUnit.DAYS, tasks);
-            executor.allowCoreThreadTimeOut(true);
+            session = auth.openSession(urlBase, concurrency);
+            poolStatistics.start(session.getConnectionManager());
+            if (PREWARM) {
+                result.warmUpTimeProperty().set(session.prewarm(concurrency));
+            }
+            boolean async = ASYNC || AsyncEngine.HTTP2;
+            rowsInFlight = new Semaphore(getRowsInFlight(concurrency, async));
+            if (async) {
+                engine = auth.openAsyncEngine(urlBase, concurrency);
+                engine.login().exceptionally(ex -> {
+                    Logger.getLogger(BatchRunner.class.getName()).log(Level.SEVERE, null, ex);
+                    return -1;
+                }).join();
+            }
+            if (VIRTUAL_THREADS) {
+                executor = newVirtualThreadExecutor();
+            } else {
+                ThreadPoolExecutor pool = new ThreadPoolExecutor(concurrency, concurrency, 1, TimeUnit.DAYS, tasks);
+                pool.allowCoreThreadTimeOut(true);
+                executor = pool;
+            }
             result.start();
             buildWorkerPool.run();
             executor.shutdown();
             executor.awaitTermination(1, TimeUnit.DAYS);
-            result.stop();
+            if (engine != null) {
+                rowsInFlight.acquire(ASYNC_ROWS);
+            }
         } catch (InterruptedException ex) {
             Logger.getLogger(BatchRunner.class.getName()).log(Level.SEVERE, null, ex);
-            if (!executor.isShutdown()) {
-                executor.getQueue().clear();
+            if (executor instanceof ThreadPoolExecutor && !executor.isShutdown()) {
+                ((ThreadPoolExecutor) executor).getQueue().clear();
             }
+        } finally {
+            // Also after an unexpected error, so nothing outlives the run and
+            // the run is not shown as still going
+            if (executor != null) {
+                executor.shutdown();
+            }
+            if (prefetcher != null) {
+                prefetcher.shutdown();
+            }
+            if (engine != null) {
+                engine.close();
+                engine = null;
+            }
+            poolStatistics.stop();
+            if (session != null) {
+                session.close();
+                session = null;
+            }
+            result.stop();
         }
-        result.stop();
     }
 
-    private void buildTasks(List<Action> actions, List<Map<String, String>> batchData, Map<String, StringProperty> defaultValues, Set<String> displayColumns) {
+    private void buildTasks(List<Action> actions, Iterable<Map<String, String>> batchData, Map<String, StringProperty> defaultValues, Set<String> displayColumns) {
+        Map<Action, CommandTemplate> templates = CommandTemplate.compileAll(actions);
+        BatchValidator validator = new BatchValidator(actions, templates);
+        Iterable<Map<String, String>> rows = withDefaults(batchData, defaultValues);
+        SortedMap<Integer, Map<Action, ParseException>> problems = null;
+        if (batchData instanceof Collection) {
+            // The rows can be read again, so bad rows are found before any
+            // request is sent rather than part way through the batch
+            problems = validator.validate(rows);
+            if (!problems.isEmpty() && ApplicationState.getInstance().errorBehaviorProperty().get() == ErrorBehavior.HALT) {
+                ApplicationState.getInstance().runningProperty().set(false);
+                reportInvalidRows(rows, problems, actions, displayColumns);
+                return;
+            }
+        }
+        prefetcher = new UploadPrefetcher(actions, templates);
+        prefetcher.start();
         int row = 0;
-        for (Map<String,String> data : batchData) {
+        for (Map<String,String> values : rows) {
+            if (!ApplicationState.getInstance().runningProperty().get()) {
+                break;
+            }
             row++;
+            int index = row - 1;
+            // A source read only once has each row checked as it is read,
+            // before any of its requests
+            Map<Action, ParseException> rowProblems = problems != null
+                    ? problems.getOrDefault(index, Collections.emptyMap())
+                    : validator.validateRow(values);
+            if (!rowProblems.isEmpty()) {
+                result.addDetail(invalidRowResult("Row "+row, actions, rowProblems, values, displayColumns));
+                if (ApplicationState.getInstance().errorBehaviorProperty().get() == ErrorBehavior.HALT) {
+                    ApplicationState.getInstance().runningProperty().set(false);
+                }
+                continue;
+            }
+            // Waits while the workers are behind
+            rowsInFlight.acquireUninterruptibly();
             try {
-                Map<String,String> values = new HashMap<>(data);
+                ActionGroupRunner runner = new ActionGroupRunner("Row "+row,this::getConnection, actions, templates, values, displayColumns);
+                runner.uploadCache = uploadCache;
+                result.addDetail(runner.results);
+                prefetcher.rowQueued(index, values);
+                if (engine != null) {
+                    prefetcher.rowStarted(index);
+                    runner.runAsync(engine).whenComplete((v, ex) -> rowsInFlight.release());
+                } else {
+                    executor.execute(() -> {
+                        try {
+                            prefetcher.rowStarted(index);
+                            runner.run();
+                        } finally {
+                            rowsInFlight.release();
+                        }
+                    });
+                }
+            } catch (ParseException ex) {
+                rowsInFlight.release();
+                Logger.getLogger(BatchRunner.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+    }
+
+    private void reportInvalidRows(Iterable<Map<String, String>> rows, SortedMap<Integer, Map<Action, ParseException>> problems, List<Action> actions, Set<String> displayColumns) {
+        int index = 0;
+        for (Map<String, String> values : rows) {
+            Map<Action, ParseException> rowProblems = problems.get(index);
+            if (rowProblems != null) {
+                result.addDetail(invalidRowResult("Row " + (index + 1), actions, rowProblems, values, displayColumns));
+            }
+            if (index++ >= problems.lastKey()) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * @return view of the rows with the defaults filled in, made row by row
+     * as the rows are read
+     */
+    private static Iterable<Map<String, String>> withDefaults(Iterable<Map<String, String>> batchData, Map<String, StringProperty> defaultValues) {
+        return () -> new Iterator<Map<String, String>>() {
+            Iterator<Map<String, String>> source = batchData.iterator();
+
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public Map<String, String> next() {
+                Map<String,String> values = new HashMap<>(source.next());
                 defaultValues.forEach((key,value)-> {
                     if (values.get(key) == null || values.get(key).isEmpty()) {
                         values.put(key,value.get());
                     }
                 });
-                ActionGroupRunner runner = new ActionGroupRunner("Row "+row,this::getConnection, actions, values, displayColumns);
-                result.addDetail(runner.results);
-                executor.execute(runner);
-            } catch (ParseException ex) {
-                Logger.getLogger(BatchRunner.class.getName()).log(Level.SEVERE, null, ex);
+                return values;
             }
+        };
+    }
+
+    /**
+     * @param concurrency concurrency setting of the run
+     * @param async true if the rows run on the asynchronous engine
+     * @return rows which may be running or queued at once: ASYNC_ROWS on the
+     * asynchronous engine; the concurrency with VIRTUAL_THREADS, as a row is
+     * only read once a thread is free for it; otherwise the concurrency plus
+     * QUEUED_ROWS waiting for the pool
+     */
+    public static int getRowsInFlight(int concurrency, boolean async) {
+        if (async) {
+            return ASYNC_ROWS;
+        }
+        return VIRTUAL_THREADS ? concurrency : concurrency + QUEUED_ROWS;
+    }
+
+    /**
+     * @return executor starting a virtual thread for each task, or a platform
+     * thread for each task if this Java version has no virtual threads
+     */
+    public static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (ReflectiveOperationException ex) {
+            Logger.getLogger(BatchRunner.class.getName()).log(Level.WARNING, "Virtual threads are not available on Java {0}, using platform threads", System.getProperty("java.version"));
+            return Executors.newCachedThreadPool();
         }
     }
+
+    private ActionGroupRunnerResult invalidRowResult(String taskName, List<Action> actions, Map<Action, ParseException> problems, Map<String, String> values, Set<String> displayColumns) {
+        ActionGroupRunnerResult rowResult = new ActionGroupRunnerResult(taskName, actions, values, displayColumns);
+        rowResult.started().set(true);
+        problems.forEach((action, ex) -> {
+            Logger.getLogger(BatchRunner.class.getName()).log(Level.WARNING, taskName + " " + action.getName() + ": " + ex.getMessage());
+            rowResult.addDetail(new ActionResult(action.getName(), ex));
+        });
+        rowResult.updateComputations();
+        return rowResult;
+    }
     
     private CloseableHttpClient getConnection(boolean getNewOne) {
-        if (getNewOne) {
-            clientThread.remove();
-        }
-        return clientThread.get();
+        // The client is shared by all workers; the pool drops broken
+        // connections by itself so there is never a reason to replace it
+        return session.getClient();
     }
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import com.adobe.ags.curly.ApplicationState;
+import com.adobe.ags.curly.model.ActionUtils;
+import com.adobe.ags.curly.model.VariableIndex.Occurrence;
+import com.adobe.ags.curly.xml.Action;
+import java.io.File;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.IntStream;
+
+import static com.adobe.ags.curly.Messages.*;
+
+/**
+ * Checks the rows of a batch against the compiled commands before their
+ * requests are sent: the request URL must be absolute and well formed, and
+ * files referenced with -T or -F name=@ must exist. Variables without a
+ * default and without a value are only logged as warnings, since they are
+ * bound as empty just like empty values. A batch run whose rows can be read
+ * twice checks all of them before the first request; rows are independent,
+ * so they are checked in parallel on the common fork/join pool. A source read
+ * only once has each row checked as it is queued.
+ */
+public class BatchValidator {
+
+    private static final int CHUNK_ROWS = 1024;
+
+    private final List<Action> actions;
+    private final Map<Action, CommandTemplate> templates = new IdentityHashMap<>();
+    private final Map<Action, ParseException> compileErrors = new IdentityHashMap<>();
+
+    public BatchValidator(List<Action> actions, Map<Action, CommandTemplate> templates) {
+        this.actions = actions;
+        for (Action action : actions) {
+            CommandTemplate template = templates.get(action);
+            if (template == null && !compileErrors.containsKey(action)) {
+                try {
+                    template = CommandTemplate.compile(action);
+                } catch (ParseException ex) {
+                    compileErrors.put(action, ex);
+                }
+            }
+            if (template != null) {
+                this.templates.put(action, template);
+            }
+        }
+    }
+
+    /**
+     * Validate all rows. Rows are read in order and checked a chunk at a
+     * time, so a source which produces rows on demand is never held in memory
+     * all at once.
+     *
+     * @param rows row values, with defaults already applied
+     * @return problems of each invalid row keyed by row index; empty if every
+     * row can be sent
+     */
+    public SortedMap<Integer, Map<Action, ParseException>> validate(Iterable<Map<String, String>> rows) {
+        SortedMap<Integer, Map<Action, ParseException>> problems = new ConcurrentSkipListMap<>();
+        List<Map<String, String>> chunk = new ArrayList<>(CHUNK_ROWS);
+        int first = 0;
+        for (Map<String, String> row : rows) {
+            chunk.add(row);
+            if (chunk.size() == CHUNK_ROWS) {
+                validateChunk(chunk, first, problems);
+                first += chunk.size();
+                chunk.clear();
+            }
+        }
+        validateChunk(chunk, first, problems);
+        return problems;
+    }
+
+    private void validateChunk(List<Map<String, String>> chunk, int first, SortedMap<Integer, Map<Action, ParseException>> problems) {
+        IntStream.range(0, chunk.size()).parallel().forEach(row -> {
+            Map<Action, ParseException> rowProblems = validateRow(chunk.get(row));
+            if (!rowProblems.isEmpty()) {
+                problems.put(first + row, rowProblems);
+            }
+        });
+    }
+
+    /**
+     * Validate a single row.
+     *
+     * @param variables row values, with defaults already applied
+     * @return first problem of each failing action, in action order
+     */
+    public Map<Action, ParseException> validateRow(Map<String, String> variables) {
+        if (actions.isEmpty()) {
+            return Collections.emptyMap();
+        }
+        Map<Action, ParseException> problems = new LinkedHashMap<>();
+        StringBuilder buffer = new StringBuilder(128);
+        for (Action action : actions) {
+            if (problems.containsKey(action)) {
+                continue;
+            }
+            ParseException problem = compileErrors.get(action);
+            if (problem == null) {
+                problem = validateAction(templates.get(action), variables, buffer);
+            }
+            if (problem != null) {
+                problems.put(action, problem);
+            }
+        }
+        return problems;
+    }
+
+    private ParseException validateAction(CommandTemplate template, Map<String, String> variables, StringBuilder buffer) {
+        List<String> missing = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        for (Occurrence occurrence : ActionUtils.getVariableIndex(template.getAction()).getOccurrences()) {
+            if (occurrence.getDefaultValue() == null && variables.get(occurrence.getName()) == null
+                    && seen.add(occurrence.getName())) {
+                missing.add(occurrence.getName());
+            }
+        }
+        if (!missing.isEmpty()) {
+            // Not a problem by itself: like an empty value, a missing one is
+            // bound as empty, which some commands rely on
+            Logger.getLogger(BatchValidator.class.getName()).log(Level.WARNING, "{0} {1}: {2}",
+                    new Object[]{template.getAction().getName(), ApplicationState.getMessage(MISSING_VARIABLE_ERROR), String.join(" ", missing)});
+        }
+
+        String url = template.getRequestUrlTemplate().build(variables, buffer);
+        try {
+            URI uri = new URI(url);
+            if (uri.getScheme() == null || uri.getHost() == null) {
+                return new ParseException(ApplicationState.getMessage(INVALID_URL_ERROR) + ": " + url, 0);
+            }
+        } catch (URISyntaxException ex) {
+            return new ParseException(ApplicationState.getMessage(INVALID_URL_ERROR) + ": " + ex.getMessage(), 0);
+        }
+
+        if (template.getHttpMethod() == ActionRunner.HttpMethod.PUT) {
+            String putFile = template.getPutFileTemplate().bind(variables, buffer);
+            if (!new File(putFile).isFile()) {
+                return new ParseException(ApplicationState.getMessage(MISSING_FILE_ERROR) + ": " + putFile, 0);
+            }
+        }
+        if (template.isMultipart()) {
+            for (List<TemplateString> values : template.getPostTemplates().values()) {
+                for (TemplateString valueTemplate : values) {
+                    String value = valueTemplate.bind(variables, buffer);
+                    if (value.startsWith("@") && !new File(value.substring(1)).isFile()) {
+                        return new ParseException(ApplicationState.getMessage(MISSING_FILE_ERROR) + ": " + value.substring(1), 0);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
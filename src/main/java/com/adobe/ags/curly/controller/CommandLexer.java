@@ -0,0 +1,209 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import com.adobe.ags.curly.ApplicationState;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.adobe.ags.curly.Messages.*;
+
+/**
+ * Splits a curl command line into tokens the way a shell would before handing
+ * them to curl. Tokens are ranges over the command's characters; the unquoted
+ * value is only built when asked for.
+ * <ul>
+ * <li>Unquoted whitespace separates tokens</li>
+ * <li>Double quotes group text; inside them a backslash only escapes
+ * <code>"</code> and <code>\</code></li>
+ * <li>Single quotes group text without any escapes</li>
+ * <li>Outside quotes a backslash escapes whitespace, quotes, <code>\</code> and
+ * <code>$</code>; any other backslash is literal so that Windows paths keep
+ * working</li>
+ * <li><code>${...}</code> variable references are kept whole, even if their
+ * default value contains spaces or quotes</li>
+ * </ul>
+ */
+public class CommandLexer {
+
+    public class Token {
+
+        private final int start;
+        private final int end;
+        private final boolean plain;
+
+        Token(int start, int end, boolean plain) {
+            this.start = start;
+            this.end = end;
+            this.plain = plain;
+        }
+
+        /**
+         * @return offset of the first character of the token in the command
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return offset just past the last character of the token
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        /**
+         * @return token with quotes and escapes removed
+         */
+        public String getValue() {
+            if (plain) {
+                return new String(source, start, end - start);
+            }
+            StringBuilder value = new StringBuilder(end - start);
+            scan(start, end, value, -1);
+            return value.toString();
+        }
+
+        /**
+         * Map a position in the value back to the command.
+         *
+         * @param valueIndex index into {@link #getValue()}
+         * @return offset of that character in the command
+         */
+        public int getSourceOffset(int valueIndex) {
+            return plain ? start + valueIndex : scan(start, end, null, valueIndex);
+        }
+    }
+
+    private final char[] source;
+
+    public CommandLexer(String command) {
+        source = command == null ? new char[0] : command.toCharArray();
+    }
+
+    public List<Token> tokenize() throws ParseException {
+        List<Token> tokens = new ArrayList<>();
+        int pos = 0;
+        while (pos < source.length) {
+            if (isWhitespace(source[pos])) {
+                pos++;
+                continue;
+            }
+            int start = pos;
+            boolean plain = true;
+            while (pos < source.length && !isWhitespace(source[pos])) {
+                char c = source[pos];
+                if (c == '"' || c == '\'') {
+                    plain = false;
+                    pos = skipQuoted(pos);
+                } else if (c == '\\' && pos + 1 < source.length && isEscapable(source[pos + 1])) {
+                    plain = false;
+                    pos += 2;
+                } else if (c == '$' && pos + 1 < source.length && source[pos + 1] == '{') {
+                    pos = skipVariable(pos);
+                } else {
+                    pos++;
+                }
+            }
+            tokens.add(new Token(start, pos, plain));
+        }
+        return tokens;
+    }
+
+    private int skipQuoted(int quotePos) throws ParseException {
+        char quote = source[quotePos];
+        int pos = quotePos + 1;
+        while (pos < source.length) {
+            char c = source[pos];
+            if (c == quote) {
+                return pos + 1;
+            } else if (quote == '"' && c == '\\' && pos + 1 < source.length) {
+                pos += 2;
+            } else {
+                pos++;
+            }
+        }
+        throw new ParseException(ApplicationState.getMessage(UNTERMINATED_QUOTE_ERROR), quotePos);
+    }
+
+    private int skipVariable(int dollarPos) {
+        for (int pos = dollarPos + 2; pos < source.length; pos++) {
+            if (source[pos] == '}') {
+                return pos + 1;
+            }
+        }
+        // Not a variable after all, treat it as plain text
+        return dollarPos + 1;
+    }
+
+    /**
+     * Walk a token, either appending its value or looking for the source
+     * position of a value index.
+     *
+     * @return source offset of stopAt, or end if not reached
+     */
+    private int scan(int start, int end, StringBuilder out, int stopAt) {
+        int valueIndex = 0;
+        int pos = start;
+        char quote = 0;
+        while (pos < end) {
+            char c = source[pos];
+            if (quote == 0 && c == '$' && pos + 1 < end && source[pos + 1] == '{') {
+                int variableEnd = Math.min(skipVariable(pos), end);
+                if (stopAt >= valueIndex && stopAt < valueIndex + variableEnd - pos) {
+                    return pos + stopAt - valueIndex;
+                }
+                if (out != null) {
+                    out.append(source, pos, variableEnd - pos);
+                }
+                valueIndex += variableEnd - pos;
+                pos = variableEnd;
+                continue;
+            } else if (quote == 0 && (c == '"' || c == '\'')) {
+                quote = c;
+                pos++;
+                continue;
+            } else if (quote != 0 && c == quote) {
+                quote = 0;
+                pos++;
+                continue;
+            }
+            int charPos = pos;
+            if (c == '\\' && pos + 1 < end
+                    && ((quote == 0 && isEscapable(source[pos + 1]))
+                    || (quote == '"' && (source[pos + 1] == '"' || source[pos + 1] == '\\')))) {
+                c = source[++pos];
+            }
+            if (valueIndex++ == stopAt) {
+                return charPos;
+            }
+            if (out != null) {
+                out.append(c);
+            }
+            pos++;
+        }
+        return end;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    private static boolean isEscapable(char c) {
+        return isWhitespace(c) || c == '"' || c == '\'' || c == '\\' || c == '$';
+    }
+}
@@ -0,0 +1,298 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import com.adobe.ags.curly.ApplicationState;
+import com.adobe.ags.curly.controller.ActionRunner.HttpMethod;
+import com.adobe.ags.curly.controller.CommandLexer.Token;
+import com.adobe.ags.curly.model.ActionUtils;
+import com.adobe.ags.curly.xml.Action;
+import com.google.gson.internal.LinkedTreeMap;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static com.adobe.ags.curly.Messages.*;
+
+/**
+ * Parsed, immutable form of an action's curl command. Parsing the command is
+ * the expensive part of building a request, so a template is compiled once per
+ * action per run and every row only binds its own values into the variable
+ * slots of the pre-split URL, header and form segments.
+ */
+public class CommandTemplate {
+
+    private final Action action;
+    private final List<String> variableNames;
+    private final String url;
+    private final HttpMethod httpMethod;
+    private final String putFile;
+    private final boolean multipart;
+    private final Map<String, List<String>> postVariables;
+    private final Map<String, List<String>> getVariables;
+    private final Map<String, String> requestHeaders;
+    private final TemplateString urlTemplate;
+    private final TemplateString putFileTemplate;
+    private final UrlTemplate requestUrlTemplate;
+    private final Map<TemplateString, List<TemplateString>> postTemplates;
+    private final Map<TemplateString, List<TemplateString>> getTemplates;
+    private final Map<TemplateString, TemplateString> headerTemplates = new LinkedHashMap<>();
+
+    public static CommandTemplate compile(Action action) throws ParseException {
+        return new CommandTemplate(action);
+    }
+
+    /**
+     * Compile every action of a run up front. Actions which fail to parse are
+     * left out so that the failure is reported against each row as before.
+     *
+     * @param actions actions of the run
+     * @return templates keyed by action identity
+     */
+    public static Map<Action, CommandTemplate> compileAll(List<Action> actions) {
+        Map<Action, CommandTemplate> templates = new IdentityHashMap<>();
+        for (Action action : actions) {
+            if (templates.containsKey(action)) {
+                continue;
+            }
+            try {
+                templates.put(action, compile(action));
+            } catch (ParseException ex) {
+                Logger.getLogger(CommandTemplate.class.getName()).log(Level.SEVERE, null, ex);
+            }
+        }
+        return Collections.unmodifiableMap(templates);
+    }
+
+    private CommandTemplate(Action action) throws ParseException {
+        this.action = action;
+        variableNames = Collections.unmodifiableList(new ArrayList<>(ActionUtils.getVariableNames(action)));
+        Parser parsed = new Parser(action.getCommand());
+        url = parsed.url;
+        httpMethod = parsed.httpMethod;
+        putFile = parsed.putFile;
+        multipart = parsed.multipart;
+        parsed.postVariables.replaceAll((name, values) -> Collections.unmodifiableList(values));
+        parsed.getVariables.replaceAll((name, values) -> Collections.unmodifiableList(values));
+        postVariables = parsed.postVariables;
+        getVariables = parsed.getVariables;
+        requestHeaders = parsed.requestHeaders;
+        urlTemplate = TemplateString.compile(url);
+        putFileTemplate = TemplateString.compile(putFile);
+        postTemplates = compileMultiValues(postVariables);
+        getTemplates = compileMultiValues(getVariables);
+        requestUrlTemplate = new UrlTemplate(urlTemplate, getTemplates);
+        requestHeaders.forEach((name, value) -> headerTemplates.put(TemplateString.compile(name), TemplateString.compile(value)));
+    }
+
+    private static Map<TemplateString, List<TemplateString>> compileMultiValues(Map<String, List<String>> source) {
+        Map<TemplateString, List<TemplateString>> compiled = new LinkedHashMap<>();
+        source.forEach((name, values) -> {
+            List<TemplateString> valueTemplates = new ArrayList<>(values.size());
+            values.forEach(value -> valueTemplates.add(TemplateString.compile(value)));
+            compiled.put(TemplateString.compile(name), Collections.unmodifiableList(valueTemplates));
+        });
+        return Collections.unmodifiableMap(compiled);
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public List<String> getVariableNames() {
+        return variableNames;
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public HttpMethod getHttpMethod() {
+        return httpMethod;
+    }
+
+    public String getPutFile() {
+        return putFile;
+    }
+
+    public boolean isMultipart() {
+        return multipart;
+    }
+
+    public Map<String, List<String>> getPostVariables() {
+        return Collections.unmodifiableMap(postVariables);
+    }
+
+    public Map<String, List<String>> getGetVariables() {
+        return Collections.unmodifiableMap(getVariables);
+    }
+
+    public Map<String, String> getRequestHeaders() {
+        return Collections.unmodifiableMap(requestHeaders);
+    }
+
+    public TemplateString getUrlTemplate() {
+        return urlTemplate;
+    }
+
+    /**
+     * @return URL including query parameters given with -G
+     */
+    public UrlTemplate getRequestUrlTemplate() {
+        return requestUrlTemplate;
+    }
+
+    public TemplateString getPutFileTemplate() {
+        return putFileTemplate;
+    }
+
+    public Map<TemplateString, List<TemplateString>> getPostTemplates() {
+        return postTemplates;
+    }
+
+    public Map<TemplateString, List<TemplateString>> getGetTemplates() {
+        return getTemplates;
+    }
+
+    public Map<TemplateString, TemplateString> getHeaderTemplates() {
+        return Collections.unmodifiableMap(headerTemplates);
+    }
+
+    public static List<String> splitByUnquotedSpaces(String str) {
+        try {
+            List<String> list = new ArrayList<>();
+            for (Token token : new CommandLexer(str).tokenize()) {
+                list.add(token.getValue());
+            }
+            return list;
+        } catch (ParseException ex) {
+            throw new IllegalArgumentException(ex.getMessage() + " @" + ex.getErrorOffset(), ex);
+        }
+    }
+
+    /**
+     * State of the command while it is parsed, copied into the template's
+     * final fields once parsing is done.
+     */
+    private static class Parser {
+
+        String url;
+        HttpMethod httpMethod = HttpMethod.GET;
+        String putFile = "";
+        boolean httpMethodExplicitlySet = false;
+        boolean multipart = false;
+        final Map<String, List<String>> postVariables = new LinkedTreeMap<>();
+        final Map<String, List<String>> getVariables = new LinkedTreeMap<>();
+        final Map<String, String> requestHeaders = new LinkedTreeMap<>();
+
+        Parser(String command) throws ParseException {
+            List<Token> tokens = new CommandLexer(command).tokenize();
+            if (tokens.isEmpty()) {
+                throw new ParseException(ApplicationState.getMessage(MISSING_URL_ERROR), 0);
+            }
+            url = tokens.get(tokens.size() - 1).getValue();
+            int paramCount = tokens.size() - 1;
+            for (int i = 0; i < paramCount; i++) {
+                Token token = tokens.get(i);
+                String part = token.getValue();
+                if (part.length() > 1 && part.startsWith("-")) {
+                    if (part.length() == 2 && i < paramCount - 1) {
+                        Token param = tokens.get(i + 1);
+                        if (parseCmdParam(part.charAt(1), param.getValue(), token.getStart(), param.getStart())) {
+                            i++;
+                        }
+                    } else {
+                        parseCmdParam(part.charAt(1), part.substring(2), token.getStart(), token.getSourceOffset(2));
+                    }
+                } else {
+                    throw new ParseException(ApplicationState.getMessage(UNKNOWN_PARAMETER) + ": " + part, token.getStart());
+                }
+            }
+        }
+
+        private boolean parseCmdParam(char command, String param, int flagOffset, int paramOffset) throws ParseException {
+            switch (command) {
+                case 'F':
+                    httpMethod = HttpMethod.POST;
+                    httpMethodExplicitlySet = true;
+                case 'd':
+                    Map<String, List<String>> vars = postVariables;
+                    if (!httpMethodExplicitlySet) {
+                        httpMethod = HttpMethod.POST;
+                    } else if (httpMethod != HttpMethod.POST) {
+                        vars = getVariables;
+                    }
+                    int equals = param.indexOf('=');
+                    if (equals > -1) {
+                        String fieldName = param.substring(0, equals);
+                        String value = equals < param.length() - 1 ? param.substring(equals + 1) : null;
+                        if (command == 'F' && value != null && value.startsWith("@")) {
+                            httpMethod = HttpMethod.POST;
+                            multipart = true;
+                        }
+                        if (!vars.containsKey(fieldName)) {
+                            vars.put(fieldName, new ArrayList<>());
+                        }
+                        vars.get(fieldName).add(value);
+                    } else {
+                        throw new ParseException(ApplicationState.getMessage(MISSING_NVP_FORM_ERROR), paramOffset);
+                    }
+                    return true;
+                case 'T':
+                    httpMethod = HttpMethod.PUT;
+                    multipart = false;
+                    putFile = param;
+                    return true;
+                case 'X':
+                    try {
+                        httpMethod = HttpMethod.valueOf(param.toUpperCase());
+                    } catch (IllegalArgumentException ex) {
+                        throw new ParseException(ApplicationState.getMessage(UNKNOWN_METHOD_ERROR) + " " + param, paramOffset);
+                    }
+                    return true;
+                case 'h':
+                    String[] nvp = param.split(":\\s*");
+                    if (nvp.length != 2) {
+                        throw new ParseException(ApplicationState.getMessage(MISSING_NVP_HEADER_ERROR), paramOffset);
+                    }
+                    requestHeaders.put(nvp[0], nvp[1]);
+                    return true;
+                case 'e':
+                    requestHeaders.put("referer", param);
+                    return true;
+                case 'u':
+                    // ignored parameterized options
+                    return true;
+                case 'G':
+                    httpMethodExplicitlySet = true;
+                    httpMethod = HttpMethod.GET;
+                case 'S':
+                case '#':
+                case 'v':
+                    //ignored no-parameter flags
+                    return false;
+                default:
+                    throw new ParseException(ApplicationState.getMessage(UNKNOWN_PARAMETER) + ": " + command, flagOffset);
+            }
+        }
+    }
+}
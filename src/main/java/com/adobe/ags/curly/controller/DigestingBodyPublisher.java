@@ -0,0 +1,79 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import java.io.FileNotFoundException;
+import java.net.http.HttpRequest.BodyPublisher;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.concurrent.Flow;
+
+/**
+ * File request body for -T uploads on the asynchronous engine which hashes
+ * the file as it is sent, the same way {@link FileChannelEntity} does for
+ * blocking requests, so the upload cache learns the hash without reading the
+ * file twice.
+ */
+public class DigestingBodyPublisher implements BodyPublisher {
+
+    private final BodyPublisher file;
+    private final MessageDigest digest;
+
+    /**
+     * @param path file to send
+     * @param digest updated with the file contents as they are sent
+     * @throws FileNotFoundException if the file does not exist
+     */
+    public DigestingBodyPublisher(Path path, MessageDigest digest) throws FileNotFoundException {
+        this.file = BodyPublishers.ofFile(path);
+        this.digest = digest;
+    }
+
+    @Override
+    public long contentLength() {
+        return file.contentLength();
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+        // A resent request subscribes again, so the file must not be hashed twice
+        digest.reset();
+        file.subscribe(new Flow.Subscriber<ByteBuffer>() {
+            @Override
+            public void onSubscribe(Flow.Subscription subscription) {
+                subscriber.onSubscribe(subscription);
+            }
+
+            @Override
+            public void onNext(ByteBuffer item) {
+                digest.update(item.duplicate());
+                subscriber.onNext(item);
+            }
+
+            @Override
+            public void onError(Throwable throwable) {
+                subscriber.onError(throwable);
+            }
+
+            @Override
+            public void onComplete() {
+                subscriber.onComplete();
+            }
+        });
+    }
+}
@@ -0,0 +1,250 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import com.adobe.ags.curly.ConnectionManager;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.ResponseHandler;
+import org.apache.http.client.entity.UrlEncodedFormEntity;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpPost;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.util.EntityUtils;
+
+/**
+ * Uploads files with the AEM direct binary access protocol instead of a
+ * multipart post, so file contents go straight to blob storage rather than
+ * through the author instance:
+ * <ol>
+ * <li>POST fileName and fileSize of each file to
+ * <code>folder.initiateUpload.json</code></li>
+ * <li>PUT the parts of each file to the upload URIs it returned, in parallel
+ * and retrying each part on its own. The URIs are pre-signed, so the parts
+ * go through a separate client that sends no credentials or cookies.</li>
+ * <li>POST fileName, mimeType and uploadToken, plus any other form fields of
+ * the command, to the returned completeURI</li>
+ * </ol>
+ */
+public class DirectBinaryUpload {
+
+    public static final String INITIATE_SELECTOR = ".initiateUpload.json";
+    public static int PART_CONCURRENCY = Integer.getInteger("curly.uploadPartConcurrency", 4);
+    public static int PART_RETRIES = Integer.getInteger("curly.uploadPartRetries", 3);
+
+    private final String initiateUrl;
+    private final List<File> files;
+    private final Map<String, List<String>> completeFields;
+
+    /**
+     * @param url request URL of the action
+     * @return true if the action should use direct binary upload
+     */
+    public static boolean isInitiateUrl(String url) {
+        try {
+            String path = new URI(url).getPath();
+            return path != null && path.endsWith(INITIATE_SELECTOR);
+        } catch (Exception ex) {
+            return false;
+        }
+    }
+
+    /**
+     * @param initiateUrl URL of the initiateUpload servlet of the target folder
+     * @param files files to upload
+     * @param completeFields extra form fields for completeUpload, such as
+     * replace or createVersion
+     */
+    public DirectBinaryUpload(String initiateUrl, List<File> files, Map<String, List<String>> completeFields) {
+        this.initiateUrl = initiateUrl;
+        this.files = files;
+        this.completeFields = completeFields;
+    }
+
+    /**
+     * Run the upload. The handler gets the initiate response if it was not
+     * successful and otherwise the completeUpload response of each file; it
+     * returns false to stop at that response.
+     *
+     * @param client client for the requests to AEM
+     * @param context context for the requests to AEM
+     * @param handler response handler
+     * @throws IOException if a request fails or a part could not be uploaded
+     */
+    public void execute(CloseableHttpClient client, HttpClientContext context, ResponseHandler<Boolean> handler) throws IOException {
+        HttpPost initiate = new HttpPost(initiateUrl);
+        List<NameValuePair> params = new ArrayList<>();
+        for (File file : files) {
+            params.add(new BasicNameValuePair("fileName", file.getName()));
+            params.add(new BasicNameValuePair("fileSize", String.valueOf(file.length())));
+        }
+        initiate.setEntity(new UrlEncodedFormEntity(params, StandardCharsets.UTF_8));
+        JsonObject session;
+        try (CloseableHttpResponse response = client.execute(initiate, context)) {
+            int status = response.getStatusLine().getStatusCode();
+            if (status < 200 || status >= 300) {
+                handler.handleResponse(response);
+                return;
+            }
+            session = new JsonParser().parse(new InputStreamReader(response.getEntity().getContent(), StandardCharsets.UTF_8)).getAsJsonObject();
+        }
+
+        URI completeUri = URI.create(initiateUrl).resolve(session.get("completeURI").getAsString());
+        Map<File, JsonObject> uploads = new LinkedHashMap<>();
+        JsonArray sessionFiles = session.getAsJsonArray("files");
+        for (int i = 0; i < files.size(); i++) {
+            uploads.put(files.get(i), sessionFiles.get(i).getAsJsonObject());
+        }
+
+        ExecutorService partPool = Executors.newFixedThreadPool(Math.max(1, PART_CONCURRENCY));
+        try (CloseableHttpClient partClient = createPartClient()) {
+            for (Map.Entry<File, JsonObject> upload : uploads.entrySet()) {
+                uploadParts(partClient, partPool, upload.getKey(), upload.getValue());
+                if (!complete(client, context, completeUri, upload.getKey(), upload.getValue(), handler)) {
+                    return;
+                }
+            }
+        } finally {
+            partPool.shutdownNow();
+        }
+    }
+
+    /**
+     * The AEM client may send its login cookie or basic credentials to any
+     * host, which the blob store must not receive.
+     *
+     * @return client without credentials, cookies or auth cache
+     */
+    private static CloseableHttpClient createPartClient() {
+        int connections = Math.max(1, PART_CONCURRENCY);
+        return HttpClients.custom()
+                .setMaxConnPerRoute(connections)
+                .setMaxConnTotal(connections)
+                .setKeepAliveStrategy(ConnectionManager.KEEP_ALIVE_STRATEGY)
+                .setDefaultCredentialsProvider(new BasicCredentialsProvider())
+                .disableCookieManagement()
+                .disableAuthCaching()
+                .build();
+    }
+
+    private void uploadParts(CloseableHttpClient client, ExecutorService partPool, File file, JsonObject upload) throws IOException {
+        JsonArray uris = upload.getAsJsonArray("uploadURIs");
+        long size = file.length();
+        long minPartSize = getLong(upload, "minPartSize", 1);
+        long maxPartSize = getLong(upload, "maxPartSize", Long.MAX_VALUE);
+        long partSize = Math.max(minPartSize, (size + uris.size() - 1) / uris.size());
+        if (partSize > maxPartSize) {
+            throw new IOException(file.getName() + " is too large for " + uris.size() + " parts of " + maxPartSize + " bytes");
+        }
+        List<Future<?>> parts = new ArrayList<>();
+        for (int part = 0; part == 0 || part * partSize < size; part++) {
+            long offset = part * partSize;
+            long length = Math.min(partSize, size - offset);
+            String uri = uris.get(part).getAsString();
+            parts.add(partPool.submit(() -> {
+                uploadPart(client, file, uri, offset, length);
+                return null;
+            }));
+        }
+        try {
+            for (Future<?> part : parts) {
+                part.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException(ex);
+        } catch (ExecutionException ex) {
+            parts.forEach(part -> part.cancel(true));
+            throw ex.getCause() instanceof IOException ? (IOException) ex.getCause() : new IOException(ex.getCause());
+        }
+    }
+
+    private static void uploadPart(CloseableHttpClient client, File file, String uri, long offset, long length) throws IOException, InterruptedException {
+        for (int attempt = 1;; attempt++) {
+            HttpPut put = new HttpPut(uri);
+            put.setEntity(new FileChannelEntity(file, offset, length, null));
+            try (CloseableHttpResponse response = client.execute(put)) {
+                int status = response.getStatusLine().getStatusCode();
+                EntityUtils.consume(response.getEntity());
+                if (status >= 200 && status < 300) {
+                    return;
+                }
+                if (attempt > PART_RETRIES) {
+                    throw new IOException("Upload of " + file.getName() + " at " + offset + " failed: " + response.getStatusLine());
+                }
+            } catch (IOException ex) {
+                if (attempt > PART_RETRIES) {
+                    throw ex;
+                }
+                Logger.getLogger(DirectBinaryUpload.class.getName()).log(Level.WARNING, "Retrying part of " + file.getName(), ex);
+            }
+            Thread.sleep(250L * attempt);
+        }
+    }
+
+    private boolean complete(CloseableHttpClient client, HttpClientContext context, URI completeUri, File file, JsonObject upload, ResponseHandler<Boolean> handler) throws IOException {
+        HttpPost complete = new HttpPost(completeUri);
+        List<NameValuePair> params = new ArrayList<>();
+        params.add(new BasicNameValuePair("fileName", upload.has("fileName") ? upload.get("fileName").getAsString() : file.getName()));
+        params.add(new BasicNameValuePair("mimeType", getMimeType(file, upload)));
+        params.add(new BasicNameValuePair("uploadToken", upload.get("uploadToken").getAsString()));
+        completeFields.forEach((name, values) -> values.forEach(value -> params.add(new BasicNameValuePair(name, value))));
+        complete.setEntity(new UrlEncodedFormEntity(params, StandardCharsets.UTF_8));
+        try (CloseableHttpResponse response = client.execute(complete, context)) {
+            Boolean proceed = handler.handleResponse(response);
+            EntityUtils.consume(response.getEntity());
+            return proceed != null && proceed;
+        }
+    }
+
+    private static String getMimeType(File file, JsonObject upload) {
+        JsonElement mimeType = upload.get("mimeType");
+        if (mimeType != null && !mimeType.isJsonNull()) {
+            return mimeType.getAsString();
+        }
+        String guess = URLConnection.guessContentTypeFromName(file.getName());
+        return guess != null ? guess : "application/octet-stream";
+    }
+
+    private static long getLong(JsonObject object, String name, long defaultValue) {
+        JsonElement value = object.get(name);
+        return value == null || value.isJsonNull() ? defaultValue : value.getAsLong();
+    }
+}
@@ -0,0 +1,46 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.MessageDigest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.mime.content.FileBody;
+
+/**
+ * Multipart file part for -F name=@file which streams the file the same way
+ * as {@link FileChannelEntity}.
+ */
+public class FileChannelBody extends FileBody {
+
+    private final MessageDigest digest;
+
+    public FileChannelBody(File file, ContentType contentType, String filename) {
+        this(file, contentType, filename, null);
+    }
+
+    public FileChannelBody(File file, ContentType contentType, String filename, MessageDigest digest) {
+        super(file, contentType, filename);
+        this.digest = digest;
+    }
+
+    @Override
+    public void writeTo(OutputStream out) throws IOException {
+        FileChannelEntity.transfer(getFile(), out, digest);
+    }
+}
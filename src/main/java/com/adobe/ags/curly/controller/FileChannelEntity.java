@@ -0,0 +1,152 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.FileEntity;
+
+/**
+ * File request body for -T uploads. HttpClient only hands entities an output
+ * stream, so the file is read through its channel into a large per-thread
+ * buffer instead of the 4k buffer used by {@link FileEntity}; writes this
+ * large go straight through HttpClient's session buffer to the socket, and
+ * uploading a multi-gigabyte package allocates nothing per chunk. An entity
+ * can also cover just a region of the file, for multi-part uploads.
+ */
+public class FileChannelEntity extends FileEntity {
+
+    static final int CHUNK_SIZE = 256 * 1024;
+    private static final ThreadLocal<byte[]> CHUNK = ThreadLocal.withInitial(() -> new byte[CHUNK_SIZE]);
+
+    private final MessageDigest digest;
+    private final long offset;
+    private final long length;
+
+    public FileChannelEntity(File file) {
+        this(file, null, null);
+    }
+
+    public FileChannelEntity(File file, ContentType contentType) {
+        this(file, contentType, null);
+    }
+
+    /**
+     * @param file file to send
+     * @param contentType content type, may be null
+     * @param digest if not null, updated with the file contents as they are
+     * sent
+     */
+    public FileChannelEntity(File file, ContentType contentType, MessageDigest digest) {
+        super(file, contentType);
+        this.digest = digest;
+        this.offset = 0;
+        this.length = -1;
+    }
+
+    /**
+     * @param file file to send part of
+     * @param offset position of the first byte to send
+     * @param length number of bytes to send
+     * @param contentType content type, may be null
+     */
+    public FileChannelEntity(File file, long offset, long length, ContentType contentType) {
+        super(file, contentType);
+        this.digest = null;
+        this.offset = offset;
+        this.length = length;
+    }
+
+    @Override
+    public long getContentLength() {
+        return length < 0 ? super.getContentLength() : length;
+    }
+
+    @Override
+    public InputStream getContent() throws IOException {
+        if (length < 0) {
+            return super.getContent();
+        }
+        ByteArrayOutputStream region = new ByteArrayOutputStream((int) Math.min(length, Integer.MAX_VALUE));
+        writeTo(region);
+        return new ByteArrayInputStream(region.toByteArray());
+    }
+
+    @Override
+    public void writeTo(OutputStream outstream) throws IOException {
+        transfer(file, offset, length, outstream, digest);
+    }
+
+    /**
+     * Copy a whole file to a stream with as few copies and calls as the
+     * stream allows.
+     *
+     * @param file source file
+     * @param out target stream, left open
+     * @param digest if not null, reset and then updated with the file contents
+     * @throws IOException if the file cannot be read or the stream fails
+     */
+    static void transfer(File file, OutputStream out, MessageDigest digest) throws IOException {
+        transfer(file, 0, -1, out, digest);
+    }
+
+    /**
+     * Copy a region of a file to a stream.
+     *
+     * @param file source file
+     * @param offset position of the first byte
+     * @param length number of bytes, or -1 for the rest of the file
+     * @param out target stream, left open
+     * @param digest if not null, reset and then updated with the bytes sent
+     * @throws IOException if the file cannot be read or the stream fails
+     */
+    static void transfer(File file, long offset, long length, OutputStream out, MessageDigest digest) throws IOException {
+        byte[] chunk = CHUNK.get();
+        ByteBuffer buffer = ByteBuffer.wrap(chunk);
+        if (digest != null) {
+            // Entities are repeatable, so a resend must not hash the file twice
+            digest.reset();
+        }
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = offset;
+            long remaining = length < 0 ? Long.MAX_VALUE : length;
+            int read = 0;
+            while (remaining > 0 && read >= 0) {
+                buffer.limit((int) Math.min(chunk.length, remaining));
+                read = channel.read(buffer, position);
+                if (read > 0) {
+                    out.write(chunk, 0, read);
+                    if (digest != null) {
+                        digest.update(chunk, 0, read);
+                    }
+                    position += read;
+                    remaining -= read;
+                }
+                buffer.clear();
+            }
+            out.flush();
+        }
+    }
+}
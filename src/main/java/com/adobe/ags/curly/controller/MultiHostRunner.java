@@ -0,0 +1,92 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import com.adobe.ags.curly.ApplicationState;
+import com.adobe.ags.curly.PoolStatistics;
+import com.adobe.ags.curly.model.BatchRunnerResult;
+import com.adobe.ags.curly.model.RunnerResult;
+import com.adobe.ags.curly.model.TaskRunner;
+import com.adobe.ags.curly.xml.Action;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.beans.property.StringProperty;
+
+/**
+ * Runs the same batch against several hosts at once, such as an author and
+ * its publishers. Each host gets its own BatchRunner with its own login
+ * session, connection pool and workers sized by the concurrency setting, and
+ * the hosts proceed in parallel so a slow host does not hold up the others.
+ * Results are grouped by host. Each host reads the rows on its own, so they
+ * are taken as a collection, which every host can read in full, rather than a
+ * one-shot source.
+ */
+public class MultiHostRunner implements TaskRunner {
+
+    BatchRunnerResult result = new BatchRunnerResult();
+    List<BatchRunner> hostRunners = new ArrayList<>();
+
+    public MultiHostRunner(AuthHandler auth, List<String> urlBases, int concurrency, List<Action> actions, Collection<Map<String, String>> batchData, Map<String, StringProperty> defaultValues, Set<String> displayColumns) {
+        for (String urlBase : urlBases) {
+            BatchRunner runner = new BatchRunner(auth, urlBase, concurrency, actions, batchData, defaultValues, displayColumns);
+            hostRunners.add(runner);
+            result.addDetail(runner.result);
+        }
+    }
+
+    @Override
+    public RunnerResult getResult() {
+        return result;
+    }
+
+    /**
+     * @return pool statistics of each host, in host order
+     */
+    public List<PoolStatistics> getPoolStatistics() {
+        List<PoolStatistics> statistics = new ArrayList<>(hostRunners.size());
+        hostRunners.forEach(runner -> statistics.add(runner.getPoolStatistics()));
+        return statistics;
+    }
+
+    @Override
+    public void run() {
+        ApplicationState.getInstance().runningProperty().set(true);
+        result.start();
+        List<Thread> hosts = new ArrayList<>(hostRunners.size());
+        for (BatchRunner runner : hostRunners) {
+            Thread host = new Thread(runner::execute, "Batch " + runner.urlBase);
+            hosts.add(host);
+            host.start();
+        }
+        try {
+            for (Thread host : hosts) {
+                host.join();
+            }
+        } catch (InterruptedException ex) {
+            Logger.getLogger(MultiHostRunner.class.getName()).log(Level.SEVERE, null, ex);
+            hosts.forEach(Thread::interrupt);
+        }
+        // Hosts warm up in parallel, so the run waited for the slowest
+        hostRunners.stream().mapToLong(runner -> runner.result.warmUpTimeProperty().get()).max()
+                .ifPresent(result.warmUpTimeProperty()::set);
+        result.stop();
+    }
+}
@@ -16,6 +16,7 @@
 package com.adobe.ags.curly.controller;
 
 import com.adobe.ags.curly.ApplicationState;
+import com.adobe.ags.curly.PoolStatistics;
 import static com.adobe.ags.curly.Messages.*;
 import com.adobe.ags.curly.model.BatchRunnerResult;
 import com.adobe.ags.curly.model.RunnerResult;
@@ -25,8 +26,11 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.text.MessageFormat;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
@@ -47,6 +51,7 @@ import javafx.scene.input.DataFormat;
 import javafx.scene.web.WebView;
 import javafx.stage.FileChooser;
 import javafx.util.StringConverter;
+import org.apache.http.pool.PoolStats;
 
 public class RunnerActivityController {
 
@@ -67,6 +72,9 @@ public class RunnerActivityController {
     @FXML // fx:id="statusLabel"
     private Label statusLabel; // Value injected by FXMLLoader
 
+    @FXML // fx:id="poolLabel"
+    private Label poolLabel; // Value injected by FXMLLoader
+
     @FXML // fx:id="ellapsedLabel"
     private Label ellapsedLabel; // Value injected by FXMLLoader
 
@@ -141,6 +149,7 @@ public class RunnerActivityController {
     void initialize() {
         assert progressBar != null : "fx:id=\"progressBar\" was not injected: check your FXML file 'RunnerReport.fxml'.";
         assert statusLabel != null : "fx:id=\"statusLabel\" was not injected: check your FXML file 'RunnerReport.fxml'.";
+        assert poolLabel != null : "fx:id=\"poolLabel\" was not injected: check your FXML file 'RunnerReport.fxml'.";
         assert ellapsedLabel != null : "fx:id=\"ellapsedLabel\" was not injected: check your FXML file 'RunnerReport.fxml'.";
         assert remainingLabel != null : "fx:id=\"remainingLabel\" was not injected: check your FXML file 'RunnerReport.fxml'.";
         assert reportStyle != null : "fx:id=\"reportStyle\" was not injected: check your FXML file 'RunnerReport.fxml'.";
@@ -178,6 +187,31 @@ public class RunnerActivityController {
             remainingLabel.setText("???");
         }
         progressBar.progressProperty().bind(results.percentComplete());
+        List<PoolStatistics> pools;
+        if (runner instanceof BatchRunner) {
+            pools = Collections.singletonList(((BatchRunner) runner).getPoolStatistics());
+        } else if (runner instanceof MultiHostRunner) {
+            pools = ((MultiHostRunner) runner).getPoolStatistics();
+        } else {
+            pools = Collections.emptyList();
+            poolLabel.setText("???");
+        }
+        pools.forEach(pool -> pool.latestProperty().addListener((observable, oldValue, newValue) -> Platform.runLater(() -> poolLabel.setText(poolString(pools)))));
+    }
+
+    private String poolString(List<PoolStatistics> pools) {
+        int leased = 0, max = 0, available = 0, pending = 0;
+        for (PoolStatistics pool : pools) {
+            PoolStatistics.Sample sample = pool.latestProperty().get();
+            if (sample != null) {
+                PoolStats total = sample.getTotal();
+                leased += total.getLeased();
+                max += total.getMax();
+                available += total.getAvailable();
+                pending += total.getPending();
+            }
+        }
+        return MessageFormat.format(ApplicationState.getMessage(POOL_STATS), leased, max, available, pending);
     }
 
     private String timeString(Long interval) {
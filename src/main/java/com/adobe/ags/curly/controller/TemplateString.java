@@ -0,0 +1,129 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A string from a command template split into literal text and variable
+ * references. Default values in references are dropped here since defaults are
+ * supplied with the row values instead. Binding walks the segments once and
+ * appends into the caller's buffer, so no patterns are compiled and no
+ * intermediate strings are made per variable.
+ */
+public class TemplateString {
+
+    public static final TemplateString EMPTY = new TemplateString("", new String[]{""}, new String[0]);
+
+    private final String source;
+    // literals.length == names.length + 1; literal i precedes variable i
+    private final String[] literals;
+    private final String[] names;
+
+    private TemplateString(String source, String[] literals, String[] names) {
+        this.source = source;
+        this.literals = literals;
+        this.names = names;
+    }
+
+    public static TemplateString compile(String source) {
+        if (source == null || source.isEmpty()) {
+            return EMPTY;
+        }
+        List<String> literals = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        int pos = 0;
+        int start;
+        while ((start = source.indexOf("${", pos)) >= 0) {
+            int end = source.indexOf('}', start + 2);
+            if (end < 0) {
+                break;
+            }
+            literals.add(source.substring(pos, start));
+            int separator = source.indexOf('|', start + 2);
+            names.add(source.substring(start + 2, separator >= 0 && separator < end ? separator : end));
+            pos = end + 1;
+        }
+        literals.add(source.substring(pos));
+        return new TemplateString(source, literals.toArray(new String[0]), names.toArray(new String[0]));
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public boolean isConstant() {
+        return names.length == 0;
+    }
+
+    public int getVariableCount() {
+        return names.length;
+    }
+
+    public String getVariableName(int index) {
+        return names[index];
+    }
+
+    /**
+     * @param index 0 to {@link #getVariableCount()}, inclusive
+     * @return literal text preceding variable <code>index</code>, or the
+     * trailing text for the last index
+     */
+    public String getLiteral(int index) {
+        return literals[index];
+    }
+
+    /**
+     * Append the bound value to a buffer; variables without a value are
+     * replaced with an empty string.
+     *
+     * @param variables values for this row
+     * @param buffer target buffer
+     * @return the same buffer
+     */
+    public StringBuilder appendTo(Map<String, String> variables, StringBuilder buffer) {
+        for (int i = 0; i < names.length; i++) {
+            buffer.append(literals[i]);
+            String value = variables.get(names[i]);
+            if (value != null) {
+                buffer.append(value);
+            }
+        }
+        return buffer.append(literals[names.length]);
+    }
+
+    /**
+     * Bind variables into this string using a reusable buffer.
+     *
+     * @param variables values for this row
+     * @param buffer scratch buffer, cleared before use
+     * @return bound string
+     */
+    public String bind(Map<String, String> variables, StringBuilder buffer) {
+        if (isConstant()) {
+            return source;
+        }
+        buffer.setLength(0);
+        return appendTo(variables, buffer).toString();
+    }
+
+    @Override
+    public String toString() {
+        return source;
+    }
+}
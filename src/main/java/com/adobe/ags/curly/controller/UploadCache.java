@@ -0,0 +1,166 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import java.io.File;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Remembers the files uploaded during one batch run. A file's content hash is
+ * computed while it is first sent, so the file is never read just to hash it;
+ * later uploads of the same file are then handled according to the policy:
+ * <ul>
+ * <li>SEND - always send the file (no caching)</li>
+ * <li>SKIP_DUPLICATE - skip a request if an identical one, same URL, same
+ * form fields and same file contents, already succeeded in this run</li>
+ * <li>COPY_FROM - skip duplicates and, for Sling POST uploads, replace the
+ * file with <code>name@CopyFrom</code> pointing at the node created by the
+ * first successful upload of the same content</li>
+ * </ul>
+ */
+public class UploadCache {
+
+    public static enum Policy {
+        SEND, SKIP_DUPLICATE, COPY_FROM
+    };
+
+    public static Policy POLICY = Policy.valueOf(System.getProperty("curly.uploadPolicy", Policy.SEND.name()));
+
+    private static final String HASH_ALGORITHM = "SHA-256";
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    /**
+     * A file is assumed unchanged as long as its path, size and modification
+     * time are the same.
+     */
+    public static class FileKey {
+
+        private final String path;
+        private final long size;
+        private final long modified;
+
+        public FileKey(File file) {
+            path = file.getAbsolutePath();
+            size = file.length();
+            modified = file.lastModified();
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof FileKey)) {
+                return false;
+            }
+            FileKey other = (FileKey) obj;
+            return size == other.size && modified == other.modified && path.equals(other.path);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(path, size, modified);
+        }
+    }
+
+    private final Policy policy;
+    private final Map<FileKey, String> hashes = new ConcurrentHashMap<>();
+    private final Map<String, String> repositoryPaths = new ConcurrentHashMap<>();
+    private final Set<String> completedRequests = ConcurrentHashMap.newKeySet();
+
+    public UploadCache() {
+        this(POLICY);
+    }
+
+    public UploadCache(Policy policy) {
+        this.policy = policy;
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public boolean isEnabled() {
+        return policy != Policy.SEND;
+    }
+
+    /**
+     * @param key file to look up
+     * @return content hash if the file was already sent in this run, otherwise
+     * null
+     */
+    public String getHash(FileKey key) {
+        return hashes.get(key);
+    }
+
+    /**
+     * @return digest to pass to the upload entity of a file whose hash is not
+     * known yet
+     */
+    public MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance(HASH_ALGORITHM);
+        } catch (NoSuchAlgorithmException ex) {
+            // Every JRE is required to support SHA-256
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    /**
+     * Record the hash of a file once it has been completely sent.
+     *
+     * @param key file that was sent
+     * @param digest digest updated while sending the file
+     * @return content hash
+     */
+    public String recordHash(FileKey key, MessageDigest digest) {
+        byte[] hash = digest.digest();
+        StringBuilder hex = new StringBuilder(hash.length * 2);
+        for (byte b : hash) {
+            hex.append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+        }
+        String value = hex.toString();
+        hashes.put(key, value);
+        return value;
+    }
+
+    /**
+     * @param signature request signature, see ActionRunner
+     * @return true if an identical request already succeeded in this run
+     */
+    public boolean isCompleted(String signature) {
+        return completedRequests.contains(signature);
+    }
+
+    public void recordCompleted(String signature) {
+        completedRequests.add(signature);
+    }
+
+    /**
+     * @param hash content hash
+     * @return repository path where content with this hash was first
+     * uploaded, or null
+     */
+    public String getRepositoryPath(String hash) {
+        return repositoryPaths.get(hash);
+    }
+
+    public void recordRepositoryPath(String hash, String path) {
+        repositoryPaths.putIfAbsent(hash, path);
+    }
+}
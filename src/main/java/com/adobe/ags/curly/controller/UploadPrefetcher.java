@@ -0,0 +1,218 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import com.adobe.ags.curly.xml.Action;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Reads the upload files of the next few rows ahead of time on a small I/O
+ * pool, so the operating system already has them cached when the worker gets
+ * to the row and sends them. Java has no portable madvise, so files are simply
+ * read through their channel and the data discarded. The files of rows which
+ * are prefetched but not started yet never add up to more than the byte
+ * budget, and a file shared by several of those rows is read once. Rows are
+ * handed over as they are queued for the workers, so only the queued rows are
+ * known here. Missing files are not a concern here since the batch validator
+ * stats the files of each row before it is queued.
+ */
+public class UploadPrefetcher {
+
+    public static long BYTE_BUDGET = Long.getLong("curly.prefetchBudget", 256L * 1024 * 1024);
+    public static int LOOKAHEAD_ROWS = Integer.getInteger("curly.prefetchRows", 8);
+    public static int THREADS = Integer.getInteger("curly.prefetchThreads", 2);
+
+    private static final int READ_SIZE = 1024 * 1024;
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(READ_SIZE));
+
+    private final List<CommandTemplate> uploads = new ArrayList<>();
+    private final Map<Integer, Map<String, String>> queuedRows = new HashMap<>();
+    private final long budget;
+    private final int lookahead;
+    private final Map<Integer, Long> rowBytes = new HashMap<>();
+    // Files read for rows which have not started yet, by row
+    private final Map<Integer, List<String>> rowFiles = new HashMap<>();
+    private final Set<String> prefetched = new HashSet<>();
+    private ExecutorService pool;
+    private int nextRow = 0;
+    private int lastRow;
+    private long pendingBytes = 0;
+
+    public UploadPrefetcher(List<Action> actions, Map<Action, CommandTemplate> templates) {
+        this(actions, templates, BYTE_BUDGET, LOOKAHEAD_ROWS);
+    }
+
+    public UploadPrefetcher(List<Action> actions, Map<Action, CommandTemplate> templates, long budget, int lookahead) {
+        for (Action action : actions) {
+            CommandTemplate template = templates.get(action);
+            if (template != null && (template.isMultipart() || template.getHttpMethod() == ActionRunner.HttpMethod.PUT)) {
+                uploads.add(template);
+            }
+        }
+        this.budget = budget;
+        this.lookahead = lookahead;
+        lastRow = lookahead - 1;
+    }
+
+    /**
+     * @return true if any action uploads files and prefetching is not turned
+     * off
+     */
+    public boolean isEnabled() {
+        return !uploads.isEmpty() && budget > 0 && lookahead > 0;
+    }
+
+    /**
+     * Start the prefetch pool; files are read as their rows are queued.
+     */
+    public synchronized void start() {
+        if (isEnabled() && pool == null) {
+            pool = Executors.newFixedThreadPool(Math.max(1, THREADS), r -> {
+                Thread t = new Thread(r, "Upload prefetch");
+                t.setDaemon(true);
+                return t;
+            });
+        }
+    }
+
+    /**
+     * Called as a row is queued for the workers, in row order.
+     *
+     * @param row index of the row
+     * @param variables row values, with defaults already applied
+     */
+    public synchronized void rowQueued(int row, Map<String, String> variables) {
+        if (pool == null || row < nextRow) {
+            return;
+        }
+        queuedRows.put(row, variables);
+        schedule();
+    }
+
+    /**
+     * Called as a worker starts a row; the row's files no longer count against
+     * the budget, are read again if a later row needs them, and the window
+     * moves forward.
+     *
+     * @param row index of the row
+     */
+    public synchronized void rowStarted(int row) {
+        if (pool == null) {
+            return;
+        }
+        Long bytes = rowBytes.remove(row);
+        if (bytes != null) {
+            pendingBytes -= bytes;
+        }
+        List<String> files = rowFiles.remove(row);
+        if (files != null) {
+            prefetched.removeAll(files);
+        }
+        if (nextRow <= row) {
+            // Workers overtook the prefetcher, no point reading those rows now
+            nextRow = row + 1;
+            queuedRows.keySet().removeIf(queued -> queued <= row);
+        }
+        lastRow = Math.max(lastRow, row + lookahead);
+        schedule();
+    }
+
+    public synchronized void shutdown() {
+        if (pool != null) {
+            pool.shutdownNow();
+            pool = null;
+        }
+    }
+
+    private void schedule() {
+        StringBuilder buffer = new StringBuilder(128);
+        while (nextRow <= lastRow && queuedRows.containsKey(nextRow)) {
+            List<File> files = new ArrayList<>();
+            long size = 0;
+            for (String path : getUploadPaths(queuedRows.get(nextRow), buffer)) {
+                File file = new File(path);
+                if (file.isFile() && !prefetched.contains(file.getAbsolutePath())) {
+                    files.add(file);
+                    size += file.length();
+                }
+            }
+            if (size > budget) {
+                // Would never fit, leave this row to be read when it is sent
+                queuedRows.remove(nextRow++);
+                continue;
+            }
+            if (pendingBytes + size > budget) {
+                return;
+            }
+            pendingBytes += size;
+            rowBytes.put(nextRow, size);
+            List<String> paths = new ArrayList<>(files.size());
+            files.forEach(file -> {
+                paths.add(file.getAbsolutePath());
+                prefetched.add(file.getAbsolutePath());
+                pool.execute(() -> prefetch(file));
+            });
+            rowFiles.put(nextRow, paths);
+            queuedRows.remove(nextRow++);
+        }
+    }
+
+    private List<String> getUploadPaths(Map<String, String> variables, StringBuilder buffer) {
+        List<String> paths = new ArrayList<>();
+        for (CommandTemplate template : uploads) {
+            if (template.getHttpMethod() == ActionRunner.HttpMethod.PUT) {
+                paths.add(template.getPutFileTemplate().bind(variables, buffer));
+            }
+            if (template.isMultipart()) {
+                template.getPostTemplates().values().forEach(values -> values.forEach(value -> {
+                    String bound = value.bind(variables, buffer);
+                    if (bound.startsWith("@")) {
+                        paths.add(bound.substring(1));
+                    }
+                }));
+            }
+        }
+        return paths;
+    }
+
+    private static void prefetch(File file) {
+        ByteBuffer buffer = READ_BUFFER.get();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            while (channel.read(buffer) >= 0 && !Thread.currentThread().isInterrupted()) {
+                buffer.clear();
+            }
+        } catch (IOException ex) {
+            // Only a hint; the upload itself will report any real problem
+            Logger.getLogger(UploadPrefetcher.class.getName()).log(Level.FINE, null, ex);
+        } finally {
+            buffer.clear();
+        }
+    }
+}
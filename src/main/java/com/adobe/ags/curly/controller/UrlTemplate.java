@@ -0,0 +1,159 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Request URL of a command template. The constant parts of the URL and the
+ * constant query keys are encoded once when the template is compiled; binding
+ * a row only encodes the variable values, straight into the caller's buffer.
+ * <p>
+ * Whitespace in the URL itself becomes <code>%20</code>. Query parameters from
+ * <code>-G -d</code> are form encoded the same way as
+ * {@link java.net.URLEncoder} with UTF-8.
+ */
+public class UrlTemplate {
+
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static class QueryParameter {
+
+        final TemplateString key;
+        final String encodedKey;
+        final TemplateString[] values;
+
+        QueryParameter(TemplateString key, List<TemplateString> values) {
+            this.key = key;
+            this.encodedKey = key.isConstant() ? appendFormEncoded(key.getSource(), new StringBuilder()).toString() : null;
+            this.values = values.toArray(new TemplateString[0]);
+        }
+    }
+
+    private final TemplateString url;
+    private final String[] encodedLiterals;
+    private final boolean literalQueryString;
+    private final QueryParameter[] queryParameters;
+
+    public UrlTemplate(TemplateString url, Map<TemplateString, List<TemplateString>> queryParameters) {
+        this.url = url;
+        encodedLiterals = new String[url.getVariableCount() + 1];
+        boolean hasQuery = false;
+        for (int i = 0; i < encodedLiterals.length; i++) {
+            encodedLiterals[i] = appendPathEncoded(url.getLiteral(i), new StringBuilder()).toString();
+            hasQuery |= encodedLiterals[i].indexOf('?') >= 0;
+        }
+        literalQueryString = hasQuery;
+        List<QueryParameter> params = new ArrayList<>(queryParameters.size());
+        queryParameters.forEach((key, values) -> params.add(new QueryParameter(key, values)));
+        this.queryParameters = params.toArray(new QueryParameter[0]);
+    }
+
+    /**
+     * Build the request URL for a row.
+     *
+     * @param variables values for this row
+     * @param buffer scratch buffer, cleared before use
+     * @return encoded URL
+     */
+    public String build(Map<String, String> variables, StringBuilder buffer) {
+        buffer.setLength(0);
+        boolean hasQueryString = literalQueryString;
+        for (int i = 0; i < url.getVariableCount(); i++) {
+            buffer.append(encodedLiterals[i]);
+            String value = variables.get(url.getVariableName(i));
+            if (value != null) {
+                appendPathEncoded(value, buffer);
+                hasQueryString |= value.indexOf('?') >= 0;
+            }
+        }
+        buffer.append(encodedLiterals[encodedLiterals.length - 1]);
+        for (QueryParameter param : queryParameters) {
+            for (TemplateString value : param.values) {
+                buffer.append(hasQueryString ? '&' : '?');
+                hasQueryString = true;
+                if (param.encodedKey != null) {
+                    buffer.append(param.encodedKey);
+                } else {
+                    appendFormEncoded(param.key, variables, buffer);
+                }
+                buffer.append('=');
+                appendFormEncoded(value, variables, buffer);
+            }
+        }
+        return buffer.toString();
+    }
+
+    private static void appendFormEncoded(TemplateString template, Map<String, String> variables, StringBuilder buffer) {
+        for (int i = 0; i < template.getVariableCount(); i++) {
+            appendFormEncoded(template.getLiteral(i), buffer);
+            String value = variables.get(template.getVariableName(i));
+            if (value != null) {
+                appendFormEncoded(value, buffer);
+            }
+        }
+        appendFormEncoded(template.getLiteral(template.getVariableCount()), buffer);
+    }
+
+    static StringBuilder appendPathEncoded(String str, StringBuilder buffer) {
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c == ' ' || c == '\t' || c == '\n' || c == 0x0B || c == '\f' || c == '\r') {
+                buffer.append("%20");
+            } else {
+                buffer.append(c);
+            }
+        }
+        return buffer;
+    }
+
+    static StringBuilder appendFormEncoded(String str, StringBuilder buffer) {
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                    || c == '.' || c == '-' || c == '*' || c == '_') {
+                buffer.append(c);
+            } else if (c == ' ') {
+                buffer.append('+');
+            } else if (c < 0x80) {
+                appendEscaped(c, buffer);
+            } else if (c < 0x800) {
+                appendEscaped(0xC0 | (c >> 6), buffer);
+                appendEscaped(0x80 | (c & 0x3F), buffer);
+            } else if (Character.isHighSurrogate(c) && i + 1 < str.length() && Character.isLowSurrogate(str.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, str.charAt(++i));
+                appendEscaped(0xF0 | (codePoint >> 18), buffer);
+                appendEscaped(0x80 | ((codePoint >> 12) & 0x3F), buffer);
+                appendEscaped(0x80 | ((codePoint >> 6) & 0x3F), buffer);
+                appendEscaped(0x80 | (codePoint & 0x3F), buffer);
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced the same way String.getBytes does
+                appendEscaped('?', buffer);
+            } else {
+                appendEscaped(0xE0 | (c >> 12), buffer);
+                appendEscaped(0x80 | ((c >> 6) & 0x3F), buffer);
+                appendEscaped(0x80 | (c & 0x3F), buffer);
+            }
+        }
+        return buffer;
+    }
+
+    private static void appendEscaped(int b, StringBuilder buffer) {
+        buffer.append('%').append(HEX[(b >> 4) & 0xF]).append(HEX[b & 0xF]);
+    }
+}
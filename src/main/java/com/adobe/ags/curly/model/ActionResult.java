@@ -33,8 +33,8 @@ import javafx.beans.property.IntegerProperty;
 import javafx.beans.property.SimpleIntegerProperty;
 import javafx.beans.property.SimpleStringProperty;
 import javafx.beans.property.StringProperty;
+import org.apache.http.HttpResponse;
 import org.apache.http.StatusLine;
-import org.apache.http.client.methods.CloseableHttpResponse;
 
 public class ActionResult extends RunnerResult<RunnerResult> {
 
@@ -68,15 +68,24 @@ public class ActionResult extends RunnerResult<RunnerResult> {
     }
 
     boolean debugMode = false;
-    ActionRunner runner;
     Exception failureCause = null;
     List<String> responseMessage;
     private final static ParsedResponseMessage UNKNOWN_RESPONSE = 
             new ParsedResponseMessage(RESULT_TYPE.WARN, ApplicationState.getMessage(COULD_NOT_DETECT_RESPONSE_STATUS));
 
     public ActionResult(ActionRunner runner) {
-        this.runner = runner;
-        reportRow().add(new SimpleStringProperty(runner.getAction().getName()));
+        this(runner.getAction().getName());
+    }
+
+    /**
+     * Result for an action which has not run yet. Results deliberately do not
+     * keep a reference to their runner so the request can be released as soon
+     * as it is finished.
+     *
+     * @param name action name
+     */
+    public ActionResult(String name) {
+        reportRow().add(new SimpleStringProperty(name));
         reportRow().add(new SimpleStringProperty(""));
         reportRow().add(new SimpleIntegerProperty(0));
         reportRow().add(new SimpleStringProperty(""));
@@ -110,12 +119,26 @@ public class ActionResult extends RunnerResult<RunnerResult> {
         setStatus(COMPLETED_UNSUCCESSFUL, -1, ex.getMessage());
     }
 
+    /**
+     * Mark the action as successful without it having sent a request.
+     *
+     * @param message reason the request was not needed
+     */
+    public void setSkipped(String message) {
+        percentSuccess().unbind();
+        percentSuccess().set(1);
+        percentComplete().unbind();
+        percentComplete().set(1.0);
+        invalidateBindings();
+        setStatus(COMPLETED_SUCCESSFUL, 0, message);
+    }
+
     @Override
     public void updateComputations() {
         // Do nothing, this action either worked or it didn't.
     }
     
-    public void processHttpResponse(CloseableHttpResponse httpResponse, ResultType resultType) throws IOException {
+    public void processHttpResponse(HttpResponse httpResponse, ResultType resultType) throws IOException {
         StatusLine status = httpResponse.getStatusLine();
         String statusKey = COMPLETED_SUCCESSFUL;
         boolean successfulResponseCode = false;
@@ -141,7 +164,7 @@ public class ActionResult extends RunnerResult<RunnerResult> {
         setStatus(statusKey, status.getStatusCode(), resultMessage);
     }
 
-    private Optional<ParsedResponseMessage> extractHtmlMessage(CloseableHttpResponse httpResponse) throws IOException {
+    private Optional<ParsedResponseMessage> extractHtmlMessage(HttpResponse httpResponse) throws IOException {
         if (httpResponse == null || httpResponse.getEntity() == null) {
             return Optional.empty();
         }
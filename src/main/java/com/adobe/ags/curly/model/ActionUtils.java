@@ -19,51 +19,42 @@ import com.adobe.ags.curly.xml.Action;
 import com.adobe.ags.curly.xml.Actions;
 import java.io.File;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.TreeMap;
-import java.util.TreeSet;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.WeakHashMap;
 import java.util.stream.Collectors;
 import javax.xml.bind.JAXB;
 
 public class ActionUtils {
 
-    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{(.*?)\\}");
+    private static final Map<Action, VariableIndex> variableIndexCache = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /**
+     * Parsed variable references of an action. Actions do not override equals,
+     * so the cache is keyed by identity; an entry is rebuilt as soon as the
+     * command of the action is changed.
+     *
+     * @param action action to inspect
+     * @return cached variable index of the current command
+     */
+    public static VariableIndex getVariableIndex(Action action) {
+        String command = action.getCommand();
+        VariableIndex index = variableIndexCache.get(action);
+        if (index == null || !index.isCurrent(command)) {
+            index = new VariableIndex(command);
+            variableIndexCache.put(action, index);
+        }
+        return index;
+    }
 
     public static Set<String> getVariableNames(Action action) {
-        Set<String> names = new TreeSet();
-        if (action.getCommand() != null && !action.getCommand().isEmpty()) {
-            Matcher matches = VARIABLE_PATTERN.matcher(action.getCommand());
-            while (matches.find()) {
-                String rawVariableName = matches.group(1);
-                String variableName = rawVariableName.contains("|")
-                        ? rawVariableName.substring(0, rawVariableName.indexOf('|'))
-                        : rawVariableName;
-                names.add(variableName);
-            }
-        }
-        return names;
+        return getVariableIndex(action).getNames();
     }
 
     public static Map<String, String> getVariablesWithDefaults(Action action) {
-        Map<String, String> variableDefaults = new TreeMap<>();
-        if (action.getCommand() != null && !action.getCommand().isEmpty()) {
-            Matcher matches = VARIABLE_PATTERN.matcher(action.getCommand());
-            while (matches.find()) {
-                String rawVariableName = matches.group(1);
-                String variableName = rawVariableName.contains("|")
-                        ? rawVariableName.substring(0, rawVariableName.indexOf('|'))
-                        : rawVariableName;
-                String variableValue = rawVariableName.contains("|")
-                        ? rawVariableName.substring(rawVariableName.indexOf('|') + 1)
-                        : null;
-                variableDefaults.put(variableName, variableValue);
-            }
-        }
-        return variableDefaults;
+        return getVariableIndex(action).getDefaults();
     }
 
     public static List<Action> readFromFile(File sourceFile) {
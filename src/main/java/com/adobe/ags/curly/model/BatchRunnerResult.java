@@ -27,14 +27,22 @@ import javafx.beans.property.ReadOnlyStringWrapper;
 import javafx.beans.property.SimpleLongProperty;
 import javafx.beans.value.ObservableValue;
 
-public class BatchRunnerResult extends RunnerResult<ActionGroupRunnerResult> {
+public class BatchRunnerResult extends RunnerResult<RunnerResult> {
 
     LongProperty timeEllapsed = new SimpleLongProperty(0);
     LongProperty timeRemaining = new SimpleLongProperty(0);
+    LongProperty warmUpTime = new SimpleLongProperty(0);
     List<Binding> allBindings = new ArrayList<>();
 
     public BatchRunnerResult() {
-        reportRow().add(new ReadOnlyStringWrapper("Batch run"));
+        this("Batch run");
+    }
+
+    /**
+     * @param name first report column, such as the host of a multi-host run
+     */
+    public BatchRunnerResult(String name) {
+        reportRow().add(new ReadOnlyStringWrapper(name));
         
         StringBinding successOrNot = Bindings.when(completelySuccessful())
                 .then(ApplicationState.getMessage(COMPLETED_SUCCESSFUL))
@@ -46,6 +54,7 @@ public class BatchRunnerResult extends RunnerResult<ActionGroupRunnerResult> {
         reportRow().add(percentCompleteString().concat(" complete"));
         reportRow().add(percentSuccessString().concat(" success"));
         reportRow().add(getDuration());
+        reportRow().add(warmUpTime.asString("%d ms warm-up"));
         allBindings.add(successOrNot);
         allBindings.add(successMessageBinding);
     }
@@ -87,6 +96,14 @@ public class BatchRunnerResult extends RunnerResult<ActionGroupRunnerResult> {
         return timeRemaining;
     }
 
+    /**
+     * @return time spent opening connections before the first row, in
+     * milliseconds; not part of the duration or the estimates
+     */
+    public LongProperty warmUpTimeProperty() {
+        return warmUpTime;
+    }
+
     @Override
     public void invalidateBindings() {
         super.invalidateBindings();
@@ -102,9 +119,15 @@ public class BatchRunnerResult extends RunnerResult<ActionGroupRunnerResult> {
         sb.append("<table><tr>");
         reportRow().forEach(value->sb.append("<td>").append(value.getValue().toString()).append("</td>"));
         sb.append("</tr>");
-        if (level > 0) {
-            getDetails().forEach(result->sb.append(result.toHtml(level)));
-        }
+        getDetails().forEach(result -> {
+            if (result instanceof BatchRunnerResult) {
+                // Results of a multi-host run are grouped by host at every level
+                sb.append("<tr><td colspan=\"").append(reportRow().size()).append("\">")
+                        .append(result.toHtml(level)).append("</td></tr>");
+            } else if (level > 0) {
+                sb.append(result.toHtml(level));
+            }
+        });
         sb.append("</table>");
         return sb.toString();
     }
@@ -0,0 +1,120 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Variable references parsed out of a single command string. Instances are
+ * immutable and cached by {@link ActionUtils} for as long as the command of
+ * the action does not change.
+ */
+public class VariableIndex {
+
+    private static final Pattern VARIABLE_PATTERN = Pattern.compile("\\$\\{(.*?)\\}");
+
+    public static class Occurrence {
+
+        private final int start;
+        private final int end;
+        private final String name;
+        private final String defaultValue;
+
+        Occurrence(int start, int end, String name, String defaultValue) {
+            this.start = start;
+            this.end = end;
+            this.name = name;
+            this.defaultValue = defaultValue;
+        }
+
+        /**
+         * @return offset of the opening <code>$</code> in the command
+         */
+        public int getStart() {
+            return start;
+        }
+
+        /**
+         * @return offset just past the closing brace in the command
+         */
+        public int getEnd() {
+            return end;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDefaultValue() {
+            return defaultValue;
+        }
+    }
+
+    private final String command;
+    private final Set<String> names;
+    private final Map<String, String> defaults;
+    private final List<Occurrence> occurrences;
+
+    VariableIndex(String command) {
+        this.command = command;
+        Set<String> variableNames = new TreeSet<>();
+        Map<String, String> variableDefaults = new TreeMap<>();
+        List<Occurrence> found = new ArrayList<>();
+        if (command != null && !command.isEmpty()) {
+            Matcher matches = VARIABLE_PATTERN.matcher(command);
+            while (matches.find()) {
+                String rawVariableName = matches.group(1);
+                int separator = rawVariableName.indexOf('|');
+                String variableName = separator >= 0 ? rawVariableName.substring(0, separator) : rawVariableName;
+                String variableValue = separator >= 0 ? rawVariableName.substring(separator + 1) : null;
+                variableNames.add(variableName);
+                variableDefaults.put(variableName, variableValue);
+                found.add(new Occurrence(matches.start(), matches.end(), variableName, variableValue));
+            }
+        }
+        names = Collections.unmodifiableSet(variableNames);
+        defaults = Collections.unmodifiableMap(variableDefaults);
+        occurrences = Collections.unmodifiableList(found);
+    }
+
+    boolean isCurrent(String currentCommand) {
+        return command == currentCommand || (command != null && command.equals(currentCommand));
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public Set<String> getNames() {
+        return names;
+    }
+
+    public Map<String, String> getDefaults() {
+        return defaults;
+    }
+
+    public List<Occurrence> getOccurrences() {
+        return occurrences;
+    }
+}
@@ -16,7 +16,28 @@
 package com.adobe.ags.curly.test;
 
 import com.adobe.ags.curly.controller.ActionRunner;
+import com.adobe.ags.curly.controller.CommandTemplate;
+import com.adobe.ags.curly.controller.FileChannelBody;
+import com.adobe.ags.curly.controller.FileChannelEntity;
+import com.adobe.ags.curly.controller.TemplateString;
+import com.adobe.ags.curly.xml.Action;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.nio.file.Files;
+import java.text.ParseException;
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Random;
+import org.apache.http.client.config.RequestConfig;
+import org.apache.http.entity.ContentType;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -38,4 +59,128 @@ public class ActionRunnerTest {
             "${2}/content/dam/test/${1}"
         },resultArray);
     }
+
+    @Test
+    public void templateTest() throws ParseException {
+        Action action = new Action();
+        action.setCommand("-F file=@${file} -F name=${package name} -F force=${force|true} -F install=true ${server}/crx/packmgr/service.jsp");
+        CommandTemplate template = CommandTemplate.compile(action);
+        assertEquals(ActionRunner.HttpMethod.POST, template.getHttpMethod());
+        assertTrue(template.isMultipart());
+        assertEquals("${server}/crx/packmgr/service.jsp", template.getUrl());
+        assertEquals(Arrays.asList("@${file}"), template.getPostVariables().get("file"));
+        assertEquals(Arrays.asList("${force|true}"), template.getPostVariables().get("force"));
+        assertEquals(Arrays.asList("${package name}"), template.getPostVariables().get("name"));
+    }
+
+    @Test
+    public void bindTest() {
+        Map<String, String> variables = new HashMap<>();
+        variables.put("server", "http://localhost:4502");
+        variables.put("file name", "${server}.jpg");
+        StringBuilder buffer = new StringBuilder();
+        TemplateString template = TemplateString.compile("${server}/content/dam/${file name}${missing}");
+        assertFalse(template.isConstant());
+        assertEquals("http://localhost:4502/content/dam/${server}.jpg", template.bind(variables, buffer));
+        assertTrue(TemplateString.compile("/content/dam").isConstant());
+        assertEquals("", TemplateString.compile(null).bind(variables, buffer));
+    }
+
+    @Test
+    public void lexerTest() throws ParseException {
+        String testStr = "-F 'title=it\\s \"quoted\"' -dx=\\\"a\\\" -Fname=${title|My Folder} ${server}/C:\\dir\\file";
+        List<String> result = ActionRunner.splitByUnquotedSpaces(testStr);
+        assertArrayEquals(new String[]{
+            "-F",
+            "title=it\\s \"quoted\"",
+            "-dx=\"a\"",
+            "-Fname=${title|My Folder}",
+            "${server}/C:\\dir\\file"
+        }, result.toArray(new String[0]));
+    }
+
+    @Test
+    public void parseErrorOffsetTest() {
+        Action action = new Action();
+        action.setCommand("-F name=value -X BOGUS ${server}/content");
+        try {
+            CommandTemplate.compile(action);
+            fail("Expected a parse error");
+        } catch (ParseException ex) {
+            assertEquals(17, ex.getErrorOffset());
+        }
+        action.setCommand("-F \"title=unterminated ${server}/content");
+        try {
+            CommandTemplate.compile(action);
+            fail("Expected a parse error");
+        } catch (ParseException ex) {
+            assertEquals(3, ex.getErrorOffset());
+        }
+    }
+
+    @Test
+    public void urlTest() throws ParseException {
+        Action action = new Action();
+        action.setCommand("-G -d fulltext=${term} -d \"p.limit=-1\" \"${server}/bin/query builder.json?path=${path|/content}\"");
+        CommandTemplate template = CommandTemplate.compile(action);
+        Map<String, String> variables = new HashMap<>();
+        variables.put("server", "http://localhost:4502");
+        variables.put("path", "/content/my site");
+        variables.put("term", "caf\u00e9 & cr\u00e8me");
+        assertEquals("http://localhost:4502/bin/query%20builder.json?path=/content/my%20site&fulltext=caf%C3%A9+%26+cr%C3%A8me&p.limit=-1",
+                template.getRequestUrlTemplate().build(variables, new StringBuilder()));
+    }
+
+    @Test
+    public void fileChannelEntityTest() throws IOException {
+        File upload = File.createTempFile("curly", ".bin");
+        upload.deleteOnExit();
+        byte[] content = new byte[600 * 1024 + 17];
+        new Random(42).nextBytes(content);
+        Files.write(upload.toPath(), content);
+
+        FileChannelEntity entity = new FileChannelEntity(upload);
+        assertEquals(content.length, entity.getContentLength());
+        assertTrue(entity.isRepeatable());
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            entity.writeTo(out);
+            assertArrayEquals(content, out.toByteArray());
+        }
+
+        ByteArrayOutputStream part = new ByteArrayOutputStream();
+        new FileChannelBody(upload, ContentType.DEFAULT_BINARY, upload.getName()).writeTo(part);
+        assertArrayEquals(content, part.toByteArray());
+    }
+
+    @Test
+    public void expectContinueKeepsClientDefaults() throws IOException {
+        RequestConfig defaults = RequestConfig.custom().setSocketTimeout(1234).setRedirectsEnabled(false).build();
+        try (CloseableHttpClient client = HttpClients.custom().setDefaultRequestConfig(defaults).build()) {
+            RequestConfig config = ActionRunner.withExpectContinue(client);
+            assertTrue(config.isExpectContinueEnabled());
+            assertEquals(1234, config.getSocketTimeout());
+            assertFalse(config.isRedirectsEnabled());
+        }
+    }
+
+    @Test
+    public void restrictedHeadersAreNotSentAsync() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Expect", "100-continue");
+        headers.put("X-Custom", "value");
+        assertTrue(ActionRunner.isAsyncSendable(headers));
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create("http://localhost/"));
+        ActionRunner.setAsyncHeaders(builder, headers);
+        HttpRequest request = builder.build();
+        assertTrue(request.expectContinue());
+        assertEquals(Optional.of("value"), request.headers().firstValue("X-Custom"));
+
+        for (String name : Arrays.asList("Host", "connection", "Content-Length", "Upgrade")) {
+            headers.put(name, "x");
+            assertFalse(name, ActionRunner.isAsyncSendable(headers));
+            ActionRunner.setAsyncHeaders(HttpRequest.newBuilder(URI.create("http://localhost/")), headers);
+            headers.remove(name);
+        }
+    }
 }
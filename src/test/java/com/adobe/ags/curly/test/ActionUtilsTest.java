@@ -0,0 +1,43 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import com.adobe.ags.curly.model.ActionUtils;
+import com.adobe.ags.curly.model.VariableIndex;
+import com.adobe.ags.curly.xml.Action;
+import java.util.Arrays;
+import java.util.TreeSet;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ActionUtilsTest {
+
+    @Test
+    public void variableIndexIsCachedUntilCommandChanges() {
+        Action action = new Action();
+        action.setCommand("-F force=${force|true} ${server}/crx/packmgr/service.jsp");
+        VariableIndex index = ActionUtils.getVariableIndex(action);
+        assertSame(index, ActionUtils.getVariableIndex(action));
+        assertEquals(new TreeSet<>(Arrays.asList("force", "server")), ActionUtils.getVariableNames(action));
+        assertEquals("true", ActionUtils.getVariablesWithDefaults(action).get("force"));
+        assertEquals(9, index.getOccurrences().get(0).getStart());
+        assertEquals("server", index.getOccurrences().get(1).getName());
+
+        action.setCommand("${server}/${path|/content}");
+        assertNotSame(index, ActionUtils.getVariableIndex(action));
+        assertEquals(new TreeSet<>(Arrays.asList("path", "server")), ActionUtils.getVariableNames(action));
+    }
+}
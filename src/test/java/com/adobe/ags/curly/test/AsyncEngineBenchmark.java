@@ -0,0 +1,88 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import com.adobe.ags.curly.controller.AsyncEngine;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import org.apache.http.HttpResponse;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Request rates of the asynchronous engine with each HTTP version against a
+ * server which speaks both, run with the benchmark profile:
+ * mvn test -Pbenchmark
+ */
+public class AsyncEngineBenchmark {
+
+    static H2cTestServer server;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException {
+        server = new H2cTestServer();
+        server.responseDelay = 20;
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        server.shutdown();
+    }
+
+    @Test
+    public void httpVersions() throws Exception {
+        // Each response takes the same time, so the rates show how many
+        // requests each version keeps in flight on its connections
+        String urlBase = "http://localhost:" + server.port;
+        int concurrency = 16;
+        int requests = 400;
+        for (HttpClient.Version version : HttpClient.Version.values()) {
+            try (AsyncEngine engine = new AsyncEngine(new BasicCredentialsProvider(), urlBase, 1, version)) {
+                // Warm up the connections before timing
+                runRequests(engine, urlBase, concurrency, concurrency);
+                int connections = server.connections.get();
+                long start = System.nanoTime();
+                runRequests(engine, urlBase, concurrency, requests);
+                double seconds = (System.nanoTime() - start) / 1.0E9;
+                System.out.printf("%s: %d requests at concurrency %d in %.3fs, %.0f requests/s, %d new connections%n",
+                        version, requests, concurrency, seconds, requests / seconds, server.connections.get() - connections);
+                assertFalse(engine.isHttp2Disabled());
+            }
+        }
+    }
+
+    private void runRequests(AsyncEngine engine, String urlBase, int concurrency, int count) throws Exception {
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            inFlight.acquire();
+            responses.add(engine.send(HttpRequest.newBuilder(URI.create(urlBase + "/success/" + i)), false)
+                    .whenComplete((r, ex) -> inFlight.release()));
+        }
+        for (CompletableFuture<HttpResponse> response : responses) {
+            assertEquals(200, response.get().getStatusLine().getStatusCode());
+        }
+    }
+}
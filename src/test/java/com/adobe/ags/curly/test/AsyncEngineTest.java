@@ -0,0 +1,292 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import com.adobe.ags.curly.LoginTokens;
+import com.adobe.ags.curly.controller.AsyncEngine;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ConnectException;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpRequest.BodyPublishers;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.http.HttpVersion;
+import org.apache.http.HttpResponse;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.util.EntityUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AsyncEngineTest {
+
+    static TestWebServer webserver;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException, InterruptedException {
+        webserver = TestWebServer.getServer();
+        webserver.requireLogin = false;
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        webserver.shutdown();
+    }
+
+    @Test
+    public void manyRequestsInFlightOnFewThreads() throws Exception {
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        creds.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "PASSWORD"));
+        String urlBase = "http://localhost:" + webserver.port;
+        AsyncEngine.THREADS = 2;
+        try (AsyncEngine engine = new AsyncEngine(creds, urlBase, 1)) {
+            int logins = webserver.loginCount.get();
+            assertEquals(200, (int) engine.login().get());
+            assertEquals(logins + 1, webserver.loginCount.get());
+
+            List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 50; i++) {
+                responses.add(engine.send(HttpRequest.newBuilder(URI.create(urlBase + "/success/" + i)), true));
+            }
+            for (CompletableFuture<HttpResponse> response : responses) {
+                HttpResponse adapted = response.get();
+                assertEquals(200, adapted.getStatusLine().getStatusCode());
+                assertEquals("OK", adapted.getStatusLine().getReasonPhrase());
+                assertEquals("This is a sample response", EntityUtils.toString(adapted.getEntity()));
+            }
+
+            HttpResponse failure = engine.send(HttpRequest.newBuilder(URI.create(urlBase + "/failure")), false).get();
+            assertEquals(403, failure.getStatusLine().getStatusCode());
+            assertEquals("Forbidden", failure.getStatusLine().getReasonPhrase());
+            assertNull(failure.getEntity());
+        } finally {
+            AsyncEngine.THREADS = 4;
+        }
+    }
+
+    @Test
+    public void expiredLoginIsRenewedOnceAndReplayed() throws Exception {
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        creds.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "PASSWORD"));
+        String urlBase = "http://localhost:" + webserver.port;
+        LoginTokens.getInstance().invalidate(urlBase, "USER");
+        webserver.issueLoginToken = true;
+        webserver.redirectToLogin = true;
+        try (AsyncEngine engine = new AsyncEngine(creds, urlBase, 1)) {
+            engine.login().get();
+            int logins = webserver.loginCount.get();
+            webserver.expiredTokens.add("login-token=token" + logins);
+
+            List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                responses.add(engine.send(HttpRequest.newBuilder(URI.create(urlBase + "/content/" + i)), true));
+            }
+            for (CompletableFuture<HttpResponse> response : responses) {
+                assertEquals(200, response.get().getStatusLine().getStatusCode());
+            }
+            assertEquals(logins + 1, webserver.loginCount.get());
+        } finally {
+            LoginTokens.getInstance().invalidate(urlBase, "USER");
+            webserver.expiredTokens.clear();
+            webserver.redirectToLogin = false;
+            webserver.issueLoginToken = false;
+        }
+    }
+
+    @Test
+    public void failedLoginIsNotRepeatedByEachRequest() throws Exception {
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        creds.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "PASSWORD"));
+        String urlBase = "http://localhost:" + webserver.port;
+        LoginTokens.getInstance().invalidate(urlBase, "USER");
+        webserver.issueLoginToken = true;
+        try (AsyncEngine engine = new AsyncEngine(creds, urlBase, 1)) {
+            engine.login().get();
+            int logins = webserver.loginCount.get();
+            webserver.loginPassword = "CHANGED";
+            webserver.expiredTokens.add("login-token=token" + logins);
+
+            List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                responses.add(engine.send(HttpRequest.newBuilder(URI.create(urlBase + "/content/" + i)), true));
+            }
+            for (CompletableFuture<HttpResponse> response : responses) {
+                assertEquals(401, response.get().getStatusLine().getStatusCode());
+            }
+            assertEquals(logins + 1, webserver.loginCount.get());
+        } finally {
+            LoginTokens.getInstance().invalidate(urlBase, "USER");
+            webserver.loginPassword = null;
+            webserver.expiredTokens.clear();
+            webserver.issueLoginToken = false;
+        }
+    }
+
+    @Test
+    public void http2IsKeptWhenTheServerIgnoresTheUpgrade() throws Exception {
+        // The test server only speaks HTTP/1.1 and answers the h2c upgrade
+        // with a plain response, which is not an HTTP/2 failure
+        String urlBase = "http://localhost:" + webserver.port;
+        for (HttpClient.Version version : HttpClient.Version.values()) {
+            try (AsyncEngine engine = new AsyncEngine(new BasicCredentialsProvider(), urlBase, 1, version)) {
+                runRequests(engine, urlBase, 16, 50);
+                assertFalse(engine.isHttp2Disabled());
+            }
+        }
+    }
+
+    @Test
+    public void http2MultiplexesRequestsOnOneConnection() throws Exception {
+        H2cTestServer server = new H2cTestServer();
+        server.responseDelay = 200;
+        String urlBase = "http://localhost:" + server.port;
+        try (AsyncEngine engine = new AsyncEngine(new BasicCredentialsProvider(), urlBase, 1, HttpClient.Version.HTTP_2)) {
+            // The first request upgrades the connection
+            HttpResponse first = engine.send(HttpRequest.newBuilder(URI.create(urlBase + "/first")), true).get();
+            assertEquals(2, first.getProtocolVersion().getMajor());
+            int connections = server.connections.get();
+
+            List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+            for (int i = 0; i < 20; i++) {
+                responses.add(engine.send(HttpRequest.newBuilder(URI.create(urlBase + "/content/" + i)), true));
+            }
+            for (CompletableFuture<HttpResponse> response : responses) {
+                HttpResponse adapted = response.get();
+                assertEquals(200, adapted.getStatusLine().getStatusCode());
+                assertEquals("OK", EntityUtils.toString(adapted.getEntity()));
+                assertEquals(2, adapted.getProtocolVersion().getMajor());
+            }
+            assertEquals("Requests should share the upgraded connection", connections, server.connections.get());
+            assertEquals(21, server.http2Streams.get());
+            assertTrue("Streams should be open at the same time", server.peakOpenStreams.get() > 1);
+            assertFalse(engine.isHttp2Disabled());
+        } finally {
+            server.shutdown();
+        }
+    }
+
+    @Test
+    public void http2FallsBackToHttp11() throws Exception {
+        // Accepts the h2c upgrade and then sends no valid HTTP/2 frames, so
+        // the HTTP/2 exchange fails; plain HTTP/1.1 requests are answered
+        AtomicInteger upgrades = new AtomicInteger();
+        AtomicInteger plainRequests = new AtomicInteger();
+        try (ServerSocket server = new ServerSocket(0)) {
+            Thread acceptor = new Thread(() -> {
+                while (!server.isClosed()) {
+                    try (Socket socket = server.accept()) {
+                        BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                        boolean upgrade = false;
+                        for (String line = in.readLine(); line != null && !line.isEmpty(); line = in.readLine()) {
+                            upgrade |= line.equalsIgnoreCase("Upgrade: h2c");
+                        }
+                        OutputStream out = socket.getOutputStream();
+                        if (upgrade) {
+                            upgrades.incrementAndGet();
+                            out.write(("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n"
+                                    + "not an HTTP/2 frame").getBytes(StandardCharsets.US_ASCII));
+                        } else {
+                            plainRequests.incrementAndGet();
+                            out.write("HTTP/1.1 200 OK\r\nContent-Length: 2\r\nConnection: close\r\n\r\nOK".getBytes(StandardCharsets.US_ASCII));
+                        }
+                        out.flush();
+                    } catch (IOException ex) {
+                        // Closed by the test
+                    }
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+
+            String urlBase = "http://localhost:" + server.getLocalPort();
+            try (AsyncEngine engine = new AsyncEngine(new BasicCredentialsProvider(), urlBase, 1, HttpClient.Version.HTTP_2)) {
+                // The failure is checked with a HEAD over HTTP/2 and then
+                // HTTP/1.1, then the GET is sent again over HTTP/1.1
+                HttpResponse response = engine.send(HttpRequest.newBuilder(URI.create(urlBase + "/first")), true).get();
+                assertEquals(200, response.getStatusLine().getStatusCode());
+                assertEquals("OK", EntityUtils.toString(response.getEntity()));
+                assertEquals(2, upgrades.get());
+                assertEquals(2, plainRequests.get());
+                assertTrue(engine.isHttp2Disabled());
+
+                assertEquals(200, engine.send(HttpRequest.newBuilder(URI.create(urlBase + "/second")), false).get().getStatusLine().getStatusCode());
+                assertEquals("Later requests should not offer HTTP/2 again", 2, upgrades.get());
+                assertEquals(3, plainRequests.get());
+            }
+
+            try (AsyncEngine engine = new AsyncEngine(new BasicCredentialsProvider(), urlBase, 1, HttpClient.Version.HTTP_2)) {
+                // A POST may have reached the server, so it is not sent again
+                try {
+                    engine.send(HttpRequest.newBuilder(URI.create(urlBase + "/post")).POST(BodyPublishers.ofString("row")), false).get();
+                    fail("The POST should not be resent");
+                } catch (ExecutionException ex) {
+                    assertTrue(ex.getCause() instanceof IOException);
+                }
+                assertTrue(engine.isHttp2Disabled());
+                assertEquals(4, upgrades.get());
+                assertEquals("Only the HEAD check should use HTTP/1.1", 4, plainRequests.get());
+            }
+        }
+    }
+
+    @Test
+    public void refusedConnectionKeepsHttp2() throws Exception {
+        int port;
+        try (ServerSocket unused = new ServerSocket(0)) {
+            port = unused.getLocalPort();
+        }
+        String urlBase = "http://localhost:" + port;
+        try (AsyncEngine engine = new AsyncEngine(new BasicCredentialsProvider(), urlBase, 1, HttpClient.Version.HTTP_2)) {
+            try {
+                engine.send(HttpRequest.newBuilder(URI.create(urlBase + "/refused")), false).get();
+                fail("The connection should be refused");
+            } catch (ExecutionException ex) {
+                assertTrue(ex.getCause() instanceof ConnectException);
+            }
+            assertFalse(engine.isHttp2Disabled());
+        }
+    }
+
+    private void runRequests(AsyncEngine engine, String urlBase, int concurrency, int count) throws Exception {
+        Semaphore inFlight = new Semaphore(concurrency);
+        List<CompletableFuture<HttpResponse>> responses = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            inFlight.acquire();
+            responses.add(engine.send(HttpRequest.newBuilder(URI.create(urlBase + "/success/" + i)), false)
+                    .whenComplete((r, ex) -> inFlight.release()));
+        }
+        for (CompletableFuture<HttpResponse> response : responses) {
+            HttpResponse adapted = response.get();
+            assertEquals(200, adapted.getStatusLine().getStatusCode());
+            assertEquals(HttpVersion.HTTP_1_1, adapted.getProtocolVersion());
+        }
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import com.adobe.ags.curly.LoginTokens;
+import com.adobe.ags.curly.controller.AuthHandler;
+import java.io.IOException;
+import javafx.beans.property.SimpleBooleanProperty;
+import javafx.beans.property.SimpleStringProperty;
+import javafx.beans.property.StringProperty;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class AuthHandlerTest {
+
+    static TestWebServer webserver;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException, InterruptedException {
+        webserver = TestWebServer.getServer();
+        webserver.requireLogin = false;
+        webserver.loginPassword = "PASSWORD";
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        webserver.shutdown();
+    }
+
+    @Test
+    public void changedPasswordIsTestedAgain() throws Exception {
+        StringProperty password = new SimpleStringProperty("PASSWORD");
+        AuthHandler handler = new AuthHandler(new SimpleStringProperty("localhost:" + webserver.port),
+                new SimpleBooleanProperty(false), new SimpleStringProperty("USER"), password);
+        try {
+            assertNull(handler.testConnection());
+            int logins = webserver.loginCount.get();
+            assertNull("Same credentials reuse the session", handler.testConnection());
+            assertEquals(logins, webserver.loginCount.get());
+
+            password.set("WRONG");
+            String failure = handler.testConnection();
+            assertNotNull("A wrong password must not reuse the earlier session", failure);
+            assertTrue(failure, failure.contains("403"));
+            assertEquals(logins + 1, webserver.loginCount.get());
+
+            password.set("PASSWORD");
+            assertNull(handler.testConnection());
+        } finally {
+            LoginTokens.getInstance().invalidate("http://localhost:" + webserver.port, "USER");
+        }
+    }
+
+    @Test
+    public void loginTokenIsReused() throws Exception {
+        AuthHandler first = new AuthHandler(new SimpleStringProperty("localhost:" + webserver.port),
+                new SimpleBooleanProperty(false), new SimpleStringProperty("USER"), new SimpleStringProperty("PASSWORD"));
+        AuthHandler second = new AuthHandler(new SimpleStringProperty("localhost:" + webserver.port),
+                new SimpleBooleanProperty(false), new SimpleStringProperty("USER"), new SimpleStringProperty("PASSWORD"));
+        webserver.issueLoginToken = true;
+        try {
+            assertNull(first.testConnection());
+            int logins = webserver.loginCount.get();
+            assertNull(second.testConnection());
+            assertEquals("The token of the first test is used", logins, webserver.loginCount.get());
+        } finally {
+            webserver.issueLoginToken = false;
+            LoginTokens.getInstance().invalidate("http://localhost:" + webserver.port, "USER");
+        }
+    }
+}
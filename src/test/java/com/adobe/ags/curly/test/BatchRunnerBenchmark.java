@@ -0,0 +1,111 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import com.adobe.ags.curly.ClientSession;
+import com.adobe.ags.curly.controller.BatchRunner;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.util.EntityUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Row rates of virtual threads and of the worker pool, run with the benchmark
+ * profile: mvn test -Pbenchmark
+ */
+public class BatchRunnerBenchmark {
+
+    static TestWebServer webserver;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException, InterruptedException {
+        webserver = TestWebServer.getServer();
+        webserver.requireLogin = false;
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        webserver.shutdown();
+    }
+
+    @Test
+    public void virtualThreadsComparedToThePool() throws Exception {
+        // Rows block in requests the same way in both modes; rates and the
+        // platform threads used are printed for comparison
+        String urlBase = "http://localhost:" + webserver.port;
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        creds.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "PASSWORD"));
+        int concurrency = 200;
+        int rows = 1000;
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        webserver.setResponseDelay(20);
+        try {
+            for (boolean virtual : new boolean[]{false, true}) {
+                BatchRunner.VIRTUAL_THREADS = virtual;
+                try (ClientSession session = new ClientSession(creds, urlBase, concurrency)) {
+                    session.prewarm(concurrency);
+                    ExecutorService executor = virtual
+                            ? BatchRunner.newVirtualThreadExecutor()
+                            : new ThreadPoolExecutor(concurrency, concurrency, 1, TimeUnit.DAYS, new LinkedBlockingQueue<>());
+                    Semaphore rowsInFlight = new Semaphore(BatchRunner.getRowsInFlight(concurrency, false));
+                    List<Future<Integer>> statuses = new ArrayList<>();
+                    threads.resetPeakThreadCount();
+                    long start = System.nanoTime();
+                    for (int i = 0; i < rows; i++) {
+                        String url = urlBase + "/content/" + i;
+                        rowsInFlight.acquire();
+                        statuses.add(executor.submit(() -> {
+                            try (CloseableHttpResponse response = session.getClient().execute(new HttpGet(url))) {
+                                EntityUtils.consume(response.getEntity());
+                                return response.getStatusLine().getStatusCode();
+                            } finally {
+                                rowsInFlight.release();
+                            }
+                        }));
+                    }
+                    executor.shutdown();
+                    assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+                    double seconds = (System.nanoTime() - start) / 1.0E9;
+                    System.out.printf("%s: %d rows at concurrency %d in %.3fs, %.0f rows/s, peak %d platform threads%n",
+                            virtual ? "Virtual threads" : "Thread pool", rows, concurrency, seconds, rows / seconds, threads.getPeakThreadCount());
+                    for (Future<Integer> status : statuses) {
+                        assertEquals(200, (int) status.get());
+                    }
+                }
+            }
+        } finally {
+            BatchRunner.VIRTUAL_THREADS = false;
+            webserver.setResponseDelay(0);
+        }
+    }
+}
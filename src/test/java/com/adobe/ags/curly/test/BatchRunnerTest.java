@@ -0,0 +1,95 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import com.adobe.ags.curly.controller.BatchRunner;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BatchRunnerTest {
+
+    @Test
+    public void rowsInFlightFollowTheMode() {
+        try {
+            BatchRunner.VIRTUAL_THREADS = false;
+            assertEquals(8 + BatchRunner.QUEUED_ROWS, BatchRunner.getRowsInFlight(8, false));
+            assertEquals(BatchRunner.ASYNC_ROWS, BatchRunner.getRowsInFlight(8, true));
+            BatchRunner.VIRTUAL_THREADS = true;
+            assertEquals(8, BatchRunner.getRowsInFlight(8, false));
+            assertEquals(BatchRunner.ASYNC_ROWS, BatchRunner.getRowsInFlight(8, true));
+        } finally {
+            BatchRunner.VIRTUAL_THREADS = false;
+        }
+    }
+
+    @Test
+    public void virtualThreadsRunRowsUpToTheConcurrency() throws Exception {
+        int concurrency = 8;
+        int rows = 40;
+        BatchRunner.VIRTUAL_THREADS = true;
+        ExecutorService executor = BatchRunner.newVirtualThreadExecutor();
+        try {
+            Semaphore rowsInFlight = new Semaphore(BatchRunner.getRowsInFlight(concurrency, false));
+            // The first rows only finish once all of them run at once, so the
+            // executor must not hold rows back the way a small pool would
+            CountDownLatch firstRows = new CountDownLatch(concurrency);
+            AtomicInteger running = new AtomicInteger();
+            AtomicInteger peak = new AtomicInteger();
+            boolean virtualExpected = Runtime.version().feature() >= 21;
+            List<Future<?>> done = new ArrayList<>();
+            for (int i = 0; i < rows; i++) {
+                rowsInFlight.acquire();
+                done.add(executor.submit(() -> {
+                    try {
+                        peak.accumulateAndGet(running.incrementAndGet(), Math::max);
+                        firstRows.countDown();
+                        assertTrue(firstRows.await(10, TimeUnit.SECONDS));
+                        assertEquals(virtualExpected, isVirtual(Thread.currentThread()));
+                        Thread.sleep(5);
+                        return null;
+                    } finally {
+                        running.decrementAndGet();
+                        rowsInFlight.release();
+                    }
+                }));
+            }
+            // Failures in the rows are rethrown here
+            for (Future<?> row : done) {
+                row.get();
+            }
+            assertEquals(concurrency, peak.get());
+        } finally {
+            executor.shutdown();
+            BatchRunner.VIRTUAL_THREADS = false;
+        }
+    }
+
+    private static boolean isVirtual(Thread thread) throws ReflectiveOperationException {
+        try {
+            return (Boolean) Thread.class.getMethod("isVirtual").invoke(thread);
+        } catch (NoSuchMethodException ex) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import com.adobe.ags.curly.controller.BatchValidator;
+import com.adobe.ags.curly.controller.CommandTemplate;
+import com.adobe.ags.curly.xml.Action;
+import java.io.File;
+import java.io.IOException;
+import java.text.ParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SortedMap;
+import java.util.stream.IntStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class BatchValidatorTest {
+
+    @Test
+    public void invalidRowsAreReported() throws IOException {
+        File upload = File.createTempFile("curly", ".txt");
+        upload.deleteOnExit();
+        Action action = new Action();
+        action.setName("upload");
+        action.setCommand("-F file=@${file} -F mode=${mode|replace} ${server}/${path}");
+        List<Action> actions = Arrays.asList(action);
+        BatchValidator validator = new BatchValidator(actions, CommandTemplate.compileAll(actions));
+
+        List<Map<String, String>> rows = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            rows.add(row("http://localhost:4502", "content/page" + i, upload.getAbsolutePath()));
+        }
+        rows.set(20, row("not a url", "content", upload.getAbsolutePath()));
+        rows.set(30, row("http://localhost:4502", "content", upload.getAbsolutePath() + ".missing"));
+
+        SortedMap<Integer, Map<Action, ParseException>> problems = validator.validate(rows);
+        assertEquals(Arrays.asList(20, 30), new ArrayList<>(problems.keySet()));
+        assertTrue(problems.get(20).get(action).getMessage().contains("not%20a%20url"));
+        assertTrue(problems.get(30).get(action).getMessage().endsWith(".missing"));
+    }
+
+    @Test
+    public void emptyValuesAreSentUnchanged() {
+        Action action = new Action();
+        action.setName("delete property");
+        action.setCommand("-F ./${property}= ${server}/${path}");
+        List<Action> actions = Arrays.asList(action);
+        Map<Action, CommandTemplate> templates = CommandTemplate.compileAll(actions);
+        BatchValidator validator = new BatchValidator(actions, templates);
+
+        // An empty value, and no value at all, are both bound as empty
+        Map<String, String> empty = row("http://localhost:4502", "", "");
+        empty.put("property", "title");
+        assertTrue(validator.validateRow(empty).isEmpty());
+        assertEquals("http://localhost:4502/", templates.get(action).getRequestUrlTemplate().build(empty, new StringBuilder()));
+        empty.remove("path");
+        assertTrue(validator.validateRow(empty).isEmpty());
+        assertEquals("http://localhost:4502/", templates.get(action).getRequestUrlTemplate().build(empty, new StringBuilder()));
+    }
+
+    @Test
+    public void rowsAreValidatedAsTheyAreRead() {
+        Action action = new Action();
+        action.setName("page");
+        action.setCommand("${server}/${path}");
+        List<Action> actions = Arrays.asList(action);
+        BatchValidator validator = new BatchValidator(actions, CommandTemplate.compileAll(actions));
+
+        // Rows made on demand, with bad rows on either side of chunk boundaries
+        int rowCount = 3000;
+        List<Integer> badRows = Arrays.asList(0, 1023, 1024, 2999);
+        Iterable<Map<String, String>> rows = () -> IntStream.range(0, rowCount)
+                .mapToObj(i -> row(badRows.contains(i) ? "not a url" : "http://localhost:4502", "content/page" + i, ""))
+                .iterator();
+
+        SortedMap<Integer, Map<Action, ParseException>> problems = validator.validate(rows);
+        assertEquals(badRows, new ArrayList<>(problems.keySet()));
+    }
+
+    @Test
+    public void unparseableActionFailsEveryRow() {
+        Action action = new Action();
+        action.setName("broken");
+        action.setCommand("-Q ${server}/content");
+        List<Action> actions = Arrays.asList(action);
+        BatchValidator validator = new BatchValidator(actions, CommandTemplate.compileAll(actions));
+        Map<Action, ParseException> problems = validator.validateRow(row("http://localhost:4502", "", ""));
+        assertEquals(0, problems.get(action).getErrorOffset());
+    }
+
+    private static Map<String, String> row(String server, String path, String file) {
+        Map<String, String> row = new HashMap<>();
+        row.put("server", server);
+        row.put("path", path);
+        row.put("file", file);
+        return row;
+    }
+}
@@ -0,0 +1,387 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import com.adobe.ags.curly.ClientSession;
+import com.adobe.ags.curly.ConnectionManager;
+import com.adobe.ags.curly.LoginTokens;
+import com.adobe.ags.curly.PoolStatistics;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.http.HttpResponse;
+import org.apache.http.HttpVersion;
+import org.apache.http.auth.AuthScope;
+import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.client.methods.CloseableHttpResponse;
+import org.apache.http.client.methods.HttpGet;
+import org.apache.http.client.methods.HttpPut;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.entity.ContentType;
+import org.apache.http.entity.StringEntity;
+import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.message.BasicHttpResponse;
+import org.apache.http.protocol.BasicHttpContext;
+import org.apache.http.pool.PoolStats;
+import org.apache.http.util.EntityUtils;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class ClientSessionTest {
+
+    static TestWebServer webserver;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException, InterruptedException {
+        webserver = TestWebServer.getServer();
+        webserver.requireLogin = false;
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        webserver.shutdown();
+    }
+
+    @Test
+    public void workersShareOneClientAndLogin() throws Exception {
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        creds.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "PASSWORD"));
+        ClientSession session = new ClientSession(creds, "http://localhost:" + webserver.port, 3);
+        assertEquals(3, session.getConnectionManager().getMaxTotal());
+        int logins = webserver.loginCount.get();
+
+        ExecutorService workers = Executors.newFixedThreadPool(6);
+        List<Future<CloseableHttpClient>> clients = new ArrayList<>();
+        for (int i = 0; i < 6; i++) {
+            clients.add(workers.submit(() -> {
+                CloseableHttpClient client = session.getClient();
+                try (CloseableHttpResponse response = client.execute(new HttpGet("http://localhost:" + webserver.port + "/success"))) {
+                    EntityUtils.consume(response.getEntity());
+                }
+                return client;
+            }));
+        }
+        workers.shutdown();
+        // Failures in the workers are rethrown here
+        CloseableHttpClient first = clients.get(0).get();
+        for (Future<CloseableHttpClient> client : clients) {
+            assertSame(first, client.get());
+        }
+        assertEquals(logins + 1, webserver.loginCount.get());
+        assertEquals(0, session.getConnectionManager().getTotalStats().getLeased());
+
+        session.close();
+        try {
+            first.execute(new HttpGet("http://localhost:" + webserver.port + "/success"));
+            fail("Client should be closed with its session");
+        } catch (IllegalStateException ex) {
+            // expected
+        }
+    }
+
+    @Test
+    public void poolStatisticsAreSampled() throws Exception {
+        String urlBase = "http://localhost:" + webserver.port;
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        creds.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "PASSWORD"));
+        ClientSession session = new ClientSession(creds, urlBase, 2);
+        PoolStatistics.INTERVAL = 10;
+        PoolStatistics statistics = new PoolStatistics();
+        session.login();
+        webserver.setResponseDelay(300);
+        try {
+            statistics.start(session.getConnectionManager());
+            ExecutorService workers = Executors.newFixedThreadPool(3);
+            List<Future<?>> requests = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                requests.add(workers.submit(() -> {
+                    try (CloseableHttpResponse response = session.getClient().execute(new HttpGet(urlBase + "/success"))) {
+                        EntityUtils.consume(response.getEntity());
+                    }
+                    return null;
+                }));
+            }
+            workers.shutdown();
+            Thread.sleep(150);
+            PoolStats busy = ConnectionManager.getStats(session.getConnectionManager()).getTotal();
+            assertEquals(2, busy.getLeased());
+            assertEquals(1, busy.getPending());
+            assertEquals(2, busy.getMax());
+            for (Future<?> request : requests) {
+                request.get();
+            }
+            Thread.sleep(50);
+            statistics.stop();
+
+            List<PoolStatistics.Sample> samples = statistics.getSamples();
+            assertTrue(samples.size() > 10);
+            assertTrue(samples.stream().anyMatch(sample -> sample.getTotal().getPending() == 1));
+            PoolStatistics.Sample last = samples.get(samples.size() - 1);
+            assertSame(last, statistics.latestProperty().get());
+            assertEquals(0, last.getTotal().getLeased());
+            assertEquals(2, last.getRoutes().get(urlBase).getAvailable());
+            for (int i = 1; i < samples.size(); i++) {
+                assertTrue(samples.get(i - 1).getTime() <= samples.get(i).getTime());
+            }
+        } finally {
+            webserver.setResponseDelay(0);
+            PoolStatistics.INTERVAL = 1000;
+            session.close();
+        }
+    }
+
+    @Test
+    public void keepAliveHonorsServerTimeout() {
+        HttpResponse response = new BasicHttpResponse(HttpVersion.HTTP_1_1, 200, "OK");
+        assertEquals(ConnectionManager.KEEP_ALIVE, ConnectionManager.KEEP_ALIVE_STRATEGY.getKeepAliveDuration(response, new BasicHttpContext()));
+        response.addHeader("Keep-Alive", "timeout=5, max=100");
+        assertEquals(5000, ConnectionManager.KEEP_ALIVE_STRATEGY.getKeepAliveDuration(response, new BasicHttpContext()));
+    }
+
+    @Test
+    public void idleConnectionsAreEvicted() throws Exception {
+        String urlBase = "http://localhost:" + webserver.port;
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        creds.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "PASSWORD"));
+        ConnectionManager.IDLE_TIMEOUT = 200;
+        ClientSession session = new ClientSession(creds, urlBase, 2);
+        try {
+            try (CloseableHttpResponse response = session.getClient().execute(new HttpGet(urlBase + "/success"))) {
+                EntityUtils.consume(response.getEntity());
+            }
+            assertEquals(1, session.getConnectionManager().getTotalStats().getAvailable());
+            long deadline = System.currentTimeMillis() + 5000;
+            while (session.getConnectionManager().getTotalStats().getAvailable() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(50);
+            }
+            assertEquals(0, session.getConnectionManager().getTotalStats().getAvailable());
+        } finally {
+            ConnectionManager.IDLE_TIMEOUT = 30000;
+            session.close();
+        }
+    }
+
+    @Test
+    public void prewarmOpensConnectionsBeforeFirstRow() throws Exception {
+        String urlBase = "http://localhost:" + webserver.port;
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        creds.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "PASSWORD"));
+        ClientSession session = new ClientSession(creds, urlBase, 3);
+        try {
+            int logins = webserver.loginCount.get();
+            assertTrue(session.prewarm(3) >= 0);
+            assertEquals(logins + 1, webserver.loginCount.get());
+            assertEquals(3, session.getConnectionManager().getTotalStats().getAvailable());
+            assertEquals(0, session.getConnectionManager().getTotalStats().getLeased());
+
+            // Requests reuse the warm connections instead of opening more
+            try (CloseableHttpResponse response = session.getClient().execute(new HttpGet(urlBase + "/success"))) {
+                EntityUtils.consume(response.getEntity());
+            }
+            assertEquals(3, session.getConnectionManager().getTotalStats().getAvailable());
+            assertEquals(logins + 1, webserver.loginCount.get());
+        } finally {
+            session.close();
+        }
+    }
+
+    @Test
+    public void basicAuthIsSentPreemptively() throws Exception {
+        String urlBase = "http://localhost:" + webserver.port;
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        creds.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "PASSWORD"));
+        ConnectionManager.USE_LOGIN_COOKIE = false;
+        webserver.requireLogin = true;
+        ClientSession session = new ClientSession(creds, urlBase, 3);
+        try {
+            int challenges = webserver.challengeCount.get();
+            int requests = webserver.requestCount.get();
+            ExecutorService workers = Executors.newFixedThreadPool(3);
+            List<Future<?>> uploads = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                uploads.add(workers.submit(() -> {
+                    for (int j = 0; j < 3; j++) {
+                        HttpPut put = new HttpPut(urlBase + "/upload");
+                        put.setEntity(new StringEntity("upload body", ContentType.TEXT_PLAIN));
+                        try (CloseableHttpResponse response = session.getClient().execute(put, HttpClientContext.create())) {
+                            assertEquals(200, response.getStatusLine().getStatusCode());
+                            EntityUtils.consume(response.getEntity());
+                        }
+                    }
+                    return null;
+                }));
+            }
+            workers.shutdown();
+            for (Future<?> upload : uploads) {
+                upload.get();
+            }
+            assertEquals(challenges, webserver.challengeCount.get());
+            assertEquals(requests + 9, webserver.requestCount.get());
+        } finally {
+            ConnectionManager.USE_LOGIN_COOKIE = true;
+            webserver.requireLogin = false;
+            session.close();
+        }
+    }
+
+    @Test
+    public void loginTokenIsReusedByLaterRuns() throws Exception {
+        String urlBase = "http://localhost:" + webserver.port;
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        creds.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "PASSWORD"));
+        File tokenFile = File.createTempFile("curly", ".tokens");
+        tokenFile.delete();
+        LoginTokens.FILE = tokenFile.getPath();
+        LoginTokens.getInstance().reload();
+        webserver.issueLoginToken = true;
+        try {
+            int logins = webserver.loginCount.get();
+            try (ClientSession first = new ClientSession(creds, urlBase, 1)) {
+                assertEquals(200, first.login());
+            }
+            assertEquals(logins + 1, webserver.loginCount.get());
+            if (tokenFile.toPath().getFileSystem().supportedFileAttributeViews().contains("posix")) {
+                assertEquals("rw-------", PosixFilePermissions.toString(Files.getPosixFilePermissions(tokenFile.toPath())));
+            }
+
+            // A later run, and a later launch reading the token file, reuse the login
+            for (int run = 0; run < 2; run++) {
+                try (ClientSession session = new ClientSession(creds, urlBase, 1)) {
+                    try (CloseableHttpResponse response = session.getClient().execute(new HttpGet(urlBase + "/success"))) {
+                        EntityUtils.consume(response.getEntity());
+                    }
+                    assertEquals(logins + 1, webserver.loginCount.get());
+                    assertEquals("login-token=token" + (logins + 1), webserver.lastRequest.getFirstHeader("Cookie").getValue());
+                }
+                LoginTokens.getInstance().reload();
+            }
+
+            // A changed password does not reuse the token of the old one
+            BasicCredentialsProvider changed = new BasicCredentialsProvider();
+            changed.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "OTHER"));
+            try (ClientSession session = new ClientSession(changed, urlBase, 1)) {
+                assertEquals(200, session.login());
+            }
+            assertEquals(logins + 2, webserver.loginCount.get());
+
+            LoginTokens.getInstance().invalidate(urlBase, "USER");
+            try (ClientSession session = new ClientSession(creds, urlBase, 1)) {
+                assertEquals(200, session.login());
+            }
+            assertEquals(logins + 3, webserver.loginCount.get());
+        } finally {
+            LoginTokens.getInstance().invalidate(urlBase, "USER");
+            LoginTokens.FILE = null;
+            LoginTokens.getInstance().reload();
+            webserver.issueLoginToken = false;
+            tokenFile.delete();
+        }
+    }
+
+    @Test
+    public void expiredLoginIsRenewedOnceAndReplayed() throws Exception {
+        String urlBase = "http://localhost:" + webserver.port;
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        creds.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "PASSWORD"));
+        LoginTokens.getInstance().invalidate(urlBase, "USER");
+        webserver.issueLoginToken = true;
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        try (ClientSession session = new ClientSession(creds, urlBase, 4)) {
+            for (boolean redirect : new boolean[]{false, true}) {
+                webserver.redirectToLogin = redirect;
+                CloseableHttpClient client = session.getClient();
+                int logins = webserver.loginCount.get();
+                webserver.expiredTokens.add("login-token=token" + logins);
+
+                List<Future<Integer>> statuses = new ArrayList<>();
+                for (int i = 0; i < 8; i++) {
+                    int worker = i;
+                    statuses.add(workers.submit(() -> {
+                        HttpPut put = new HttpPut(urlBase + "/content/" + worker);
+                        put.setEntity(new StringEntity("row " + worker, ContentType.TEXT_PLAIN));
+                        try (CloseableHttpResponse response = client.execute(worker % 2 == 0 ? put : new HttpGet(urlBase + "/content/" + worker))) {
+                            EntityUtils.consume(response.getEntity());
+                            return response.getStatusLine().getStatusCode();
+                        }
+                    }));
+                }
+
+                for (Future<Integer> status : statuses) {
+                    assertEquals(200, (int) status.get());
+                }
+                assertEquals("Workers should share one new login", logins + 1, webserver.loginCount.get());
+                assertEquals("login-token=token" + (logins + 1), webserver.lastRequest.getFirstHeader("Cookie").getValue());
+            }
+        } finally {
+            workers.shutdown();
+            LoginTokens.getInstance().invalidate(urlBase, "USER");
+            webserver.expiredTokens.clear();
+            webserver.redirectToLogin = false;
+            webserver.issueLoginToken = false;
+        }
+    }
+
+    @Test
+    public void failedLoginIsNotRepeatedByEachWorker() throws Exception {
+        String urlBase = "http://localhost:" + webserver.port;
+        BasicCredentialsProvider creds = new BasicCredentialsProvider();
+        creds.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials("USER", "PASSWORD"));
+        LoginTokens.getInstance().invalidate(urlBase, "USER");
+        webserver.issueLoginToken = true;
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        try (ClientSession session = new ClientSession(creds, urlBase, 4)) {
+            CloseableHttpClient client = session.getClient();
+            int logins = webserver.loginCount.get();
+            int generation = session.getLoginGeneration();
+            // The password was changed on the server while the token expired
+            webserver.loginPassword = "CHANGED";
+            webserver.expiredTokens.add("login-token=token" + logins);
+
+            List<Future<Integer>> statuses = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String url = urlBase + "/content/" + i;
+                statuses.add(workers.submit(() -> {
+                    try (CloseableHttpResponse response = client.execute(new HttpGet(url))) {
+                        EntityUtils.consume(response.getEntity());
+                        return response.getStatusLine().getStatusCode();
+                    }
+                }));
+            }
+            for (Future<Integer> status : statuses) {
+                assertEquals(401, (int) status.get());
+            }
+            assertEquals("Only one worker should try the login", logins + 1, webserver.loginCount.get());
+            assertEquals(generation, session.getLoginGeneration());
+            assertEquals(403, session.relogin(generation));
+            assertEquals(logins + 1, webserver.loginCount.get());
+        } finally {
+            workers.shutdown();
+            LoginTokens.getInstance().invalidate(urlBase, "USER");
+            webserver.loginPassword = null;
+            webserver.expiredTokens.clear();
+            webserver.issueLoginToken = false;
+        }
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.adobe.ags.curly.test;
 
+import com.adobe.ags.curly.ClientSession;
 import com.adobe.ags.curly.ConnectionManager;
 import com.adobe.ags.curly.controller.AuthHandler;
 import java.io.IOException;
@@ -22,9 +23,9 @@ import java.util.Base64;
 import javafx.beans.property.ReadOnlyBooleanWrapper;
 import javafx.beans.property.ReadOnlyStringWrapper;
 import org.apache.http.Header;
+import org.apache.http.client.methods.CloseableHttpResponse;
 import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpUriRequest;
-import org.apache.http.impl.client.CloseableHttpClient;
 import org.junit.After;
 import org.junit.AfterClass;
 import org.junit.Before;
@@ -50,7 +51,6 @@ public class ConnectionManagerTest {
     
     @AfterClass
     public static void tearDownClass() {
-        ConnectionManager.getInstance().shutdown();
         webserver.shutdown();
     }
     
@@ -65,16 +65,21 @@ public class ConnectionManagerTest {
     @Test
     public void getAuthenticatedConnection() throws IOException {
         webserver.requireLogin = true;
+        ConnectionManager.USE_LOGIN_COOKIE = false;
         AuthHandler handler = new AuthHandler(
                 new ReadOnlyStringWrapper("localhost:"+webserver.port), 
                 new ReadOnlyBooleanWrapper(false), 
                 new ReadOnlyStringWrapper(TEST_USER), 
                 new ReadOnlyStringWrapper(TEST_PASSWORD)
         );
-        CloseableHttpClient client = handler.getAuthenticatedClient();
-        assertNotNull(client);
         HttpUriRequest request = new HttpGet("http://localhost:"+webserver.port+"/testUri");
-        client.execute(request);
+        try (ClientSession session = handler.openSession(1);
+                CloseableHttpResponse response = session.getClient().execute(request)) {
+            assertEquals(200, response.getStatusLine().getStatusCode());
+        } finally {
+            ConnectionManager.USE_LOGIN_COOKIE = true;
+            webserver.requireLogin = false;
+        }
         Header authHeader = webserver.lastRequest.getFirstHeader("Authorization");
         assertNotNull(authHeader);
         String compareToken = "Basic "+Base64.getEncoder().encodeToString((TEST_USER + ":" + TEST_PASSWORD).getBytes());
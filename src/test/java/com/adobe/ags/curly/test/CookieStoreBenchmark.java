@@ -0,0 +1,84 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import com.adobe.ags.curly.ConcurrentCookieStore;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.http.client.CookieStore;
+import org.apache.http.impl.client.BasicCookieStore;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ * Cookie store throughput under contention, run with the benchmark profile:
+ * mvn test -Pbenchmark
+ */
+public class CookieStoreBenchmark {
+
+    @Test
+    public void contention() throws Exception {
+        // Workers read the cookies for every request and set one now and then,
+        // like HttpClient against AEM; each store runs twice to warm up
+        int threads = 8;
+        long durationMs = 500;
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        try {
+            for (CookieStore store : new CookieStore[]{new BasicCookieStore(), new ConcurrentCookieStore(),
+                new BasicCookieStore(), new ConcurrentCookieStore()}) {
+                for (int i = 0; i < 5; i++) {
+                    store.addCookie(cookie("cookie" + i));
+                }
+                store.addCookie(cookie("login-token"));
+                long end = System.currentTimeMillis() + durationMs;
+                List<Future<Long>> counts = new ArrayList<>();
+                for (int t = 0; t < threads; t++) {
+                    counts.add(workers.submit(() -> {
+                        long count = 0;
+                        while (System.currentTimeMillis() < end) {
+                            for (int i = 0; i < 1000; i++) {
+                                assertEquals(6, store.getCookies().size());
+                            }
+                            store.addCookie(cookie("login-token"));
+                            count += 1001;
+                        }
+                        return count;
+                    }));
+                }
+                long operations = 0;
+                for (Future<Long> count : counts) {
+                    operations += count.get();
+                }
+                System.out.printf("%s: %,d operations/s with %d threads%n", store.getClass().getSimpleName(),
+                        operations * 1000 / durationMs, threads);
+                store.clear();
+            }
+        } finally {
+            workers.shutdown();
+        }
+    }
+
+    private static BasicClientCookie cookie(String name) {
+        BasicClientCookie cookie = new BasicClientCookie(name, "value");
+        cookie.setDomain("localhost");
+        cookie.setPath("/");
+        return cookie;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import com.adobe.ags.curly.ConcurrentCookieStore;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.apache.http.client.CookieStore;
+import org.apache.http.cookie.Cookie;
+import org.apache.http.impl.cookie.BasicClientCookie;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class CookieStoreTest {
+
+    private static BasicClientCookie cookie(String name, String value, String domain) {
+        BasicClientCookie cookie = new BasicClientCookie(name, value);
+        cookie.setDomain(domain);
+        cookie.setPath("/");
+        return cookie;
+    }
+
+    @Test
+    public void loginTokenIsReplaced() {
+        CookieStore store = new ConcurrentCookieStore();
+        store.addCookie(cookie("login-token", "first", "author"));
+        store.addCookie(cookie("login-token", "first", "publish"));
+        List<Cookie> before = store.getCookies();
+        store.addCookie(cookie("login-token", "second", "author"));
+
+        assertEquals(2, before.size());
+        assertEquals("first", before.get(0).getValue());
+        assertEquals(2, store.getCookies().size());
+        assertTrue(store.getCookies().stream().anyMatch(c -> c.getDomain().equals("author") && c.getValue().equals("second")));
+        assertTrue(store.getCookies().stream().anyMatch(c -> c.getDomain().equals("publish") && c.getValue().equals("first")));
+
+        BasicClientCookie logout = cookie("login-token", "", "author");
+        logout.setExpiryDate(new Date(System.currentTimeMillis() - 1000));
+        store.addCookie(logout);
+        assertEquals(1, store.getCookies().size());
+
+        BasicClientCookie expiring = cookie("session", "x", "publish");
+        expiring.setExpiryDate(new Date(System.currentTimeMillis() + 1000));
+        store.addCookie(expiring);
+        assertFalse(store.clearExpired(new Date()));
+        assertTrue(store.clearExpired(new Date(System.currentTimeMillis() + 2000)));
+        assertEquals(1, store.getCookies().size());
+        store.clear();
+        assertTrue(store.getCookies().isEmpty());
+    }
+
+    @Test
+    public void cookiesAreConsistentUnderContention() throws Exception {
+        // Workers read the cookies for every request and set one now and then,
+        // like HttpClient against AEM; no reader may see a partial update
+        CookieStore store = new ConcurrentCookieStore();
+        for (int i = 0; i < 5; i++) {
+            store.addCookie(cookie("cookie" + i, "value", "localhost"));
+        }
+        store.addCookie(cookie("login-token", "token0", "localhost"));
+        ExecutorService workers = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> done = new ArrayList<>();
+            for (int t = 0; t < 8; t++) {
+                int worker = t;
+                done.add(workers.submit(() -> {
+                    for (int round = 0; round < 200; round++) {
+                        for (int i = 0; i < 50; i++) {
+                            assertEquals(6, store.getCookies().size());
+                        }
+                        store.addCookie(cookie("login-token", "token" + worker, "localhost"));
+                    }
+                    return null;
+                }));
+            }
+            // Failures in the workers are rethrown here
+            for (Future<?> worker : done) {
+                worker.get();
+            }
+        } finally {
+            workers.shutdown();
+        }
+        assertEquals(1, store.getCookies().stream().filter(c -> c.getName().equals("login-token")).count());
+    }
+}
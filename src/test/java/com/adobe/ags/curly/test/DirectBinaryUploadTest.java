@@ -0,0 +1,105 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import com.adobe.ags.curly.controller.DirectBinaryUpload;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.apache.http.HttpRequestInterceptor;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.protocol.HttpClientContext;
+import org.apache.http.impl.client.CloseableHttpClient;
+import org.apache.http.impl.client.HttpClients;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class DirectBinaryUploadTest {
+
+    static TestWebServer webserver;
+
+    @BeforeClass
+    public static void setUpClass() throws IOException, InterruptedException {
+        webserver = TestWebServer.getServer();
+        webserver.requireLogin = false;
+    }
+
+    @AfterClass
+    public static void tearDownClass() {
+        webserver.shutdown();
+    }
+
+    @Test
+    public void uploadsPartsAndCompletes() throws IOException {
+        File upload = File.createTempFile("curly", ".bin");
+        upload.deleteOnExit();
+        byte[] content = new byte[100 * 1024 + 1];
+        new Random(11).nextBytes(content);
+        Files.write(upload.toPath(), content);
+        // Each failed part is retried on its own
+        webserver.failingParts.set(2);
+
+        String url = "http://localhost:" + webserver.port + "/content/dam/test.initiateUpload.json";
+        assertTrue(DirectBinaryUpload.isInitiateUrl(url));
+        Map<String, List<String>> fields = new HashMap<>();
+        fields.put("replace", Arrays.asList("true"));
+        List<Integer> statuses = new ArrayList<>();
+        // Stands in for the credentials of the AEM session
+        try (CloseableHttpClient client = HttpClients.custom()
+                .addInterceptorFirst((HttpRequestInterceptor) (request, context) -> request.setHeader("Authorization", "Basic dXNlcjpwYXNz"))
+                .build()) {
+            new DirectBinaryUpload(url, Arrays.asList(upload), fields).execute(client, HttpClientContext.create(), response -> {
+                statuses.add(response.getStatusLine().getStatusCode());
+                return true;
+            });
+        }
+
+        assertEquals(Arrays.asList(201), statuses);
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        for (int i = 0; i < webserver.uploadParts; i++) {
+            received.write(webserver.blobs.get("/blob/" + upload.getName() + "/" + i));
+        }
+        assertArrayEquals(content, received.toByteArray());
+        assertEquals("Parts go to blob storage without AEM credentials", 0, webserver.authenticatedParts.get());
+        List<NameValuePair> completion = webserver.completedUploads.get(0);
+        assertTrue(completion.stream().anyMatch(p -> p.getName().equals("uploadToken") && p.getValue().equals("token-" + upload.getName())));
+        assertTrue(completion.stream().anyMatch(p -> p.getName().equals("replace") && p.getValue().equals("true")));
+    }
+
+    @Test
+    public void rejectedInitiateIsReported() throws IOException {
+        String url = "http://localhost:" + webserver.port + "/content/dam/failure.initiateUpload.json";
+        List<Integer> statuses = new ArrayList<>();
+        try (CloseableHttpClient client = HttpClients.createDefault()) {
+            new DirectBinaryUpload(url, Arrays.asList(new File("missing.bin")), Collections.emptyMap()).execute(client, HttpClientContext.create(), response -> {
+                statuses.add(response.getStatusLine().getStatusCode());
+                return false;
+            });
+        }
+        assertEquals(Arrays.asList(403), statuses);
+        assertFalse(DirectBinaryUpload.isInitiateUrl("http://localhost/content/dam/test"));
+    }
+}
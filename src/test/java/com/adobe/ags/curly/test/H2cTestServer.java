@@ -0,0 +1,231 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Just enough of a cleartext HTTP/2 server to test multiplexing: it accepts
+ * the h2c upgrade and then answers every stream of the connection with 200
+ * and "OK" after the response delay, each stream on its own schedule so that
+ * their responses overlap. Requests without the upgrade get the same answer
+ * over HTTP/1.1. Request headers are not decoded, so every path is answered
+ * the same way.
+ */
+public class H2cTestServer {
+
+    private static final byte[] PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BODY = "OK".getBytes(StandardCharsets.US_ASCII);
+    private static final int DATA = 0, HEADERS = 1, SETTINGS = 4, PING = 6, GOAWAY = 7;
+    private static final int END_STREAM = 0x1, ACK = 0x1, END_HEADERS = 0x4;
+
+    private final ServerSocket serverSocket;
+    private final ScheduledExecutorService responder = Executors.newScheduledThreadPool(2);
+    int port;
+    long responseDelay = 0;
+    AtomicInteger connections = new AtomicInteger();
+    AtomicInteger http2Streams = new AtomicInteger();
+    AtomicInteger http11Requests = new AtomicInteger();
+    AtomicInteger openStreams = new AtomicInteger();
+    AtomicInteger peakOpenStreams = new AtomicInteger();
+
+    public H2cTestServer() throws IOException {
+        serverSocket = new ServerSocket(0);
+        port = serverSocket.getLocalPort();
+        Thread acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    Socket socket = serverSocket.accept();
+                    socket.setTcpNoDelay(true);
+                    connections.incrementAndGet();
+                    Thread connection = new Thread(() -> serve(socket));
+                    connection.setDaemon(true);
+                    connection.start();
+                } catch (IOException ex) {
+                    // Closed by shutdown
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    public void shutdown() {
+        responder.shutdownNow();
+        try {
+            serverSocket.close();
+        } catch (IOException ex) {
+            Logger.getLogger(H2cTestServer.class.getName()).log(Level.SEVERE, null, ex);
+        }
+    }
+
+    private void serve(Socket socket) {
+        try (Socket s = socket) {
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            OutputStream out = s.getOutputStream();
+            while (true) {
+                boolean upgrade = false;
+                int contentLength = 0;
+                String line = readLine(in);
+                if (line == null) {
+                    return;
+                }
+                for (line = readLine(in); line != null && !line.isEmpty(); line = readLine(in)) {
+                    String lower = line.toLowerCase();
+                    upgrade |= lower.equals("upgrade: h2c");
+                    if (lower.startsWith("content-length:")) {
+                        contentLength = Integer.parseInt(line.substring(15).trim());
+                    }
+                }
+                in.skipNBytes(contentLength);
+                if (upgrade) {
+                    synchronized (out) {
+                        out.write("HTTP/1.1 101 Switching Protocols\r\nConnection: Upgrade\r\nUpgrade: h2c\r\n\r\n".getBytes(StandardCharsets.US_ASCII));
+                        writeFrame(out, SETTINGS, 0, 0, new byte[0]);
+                    }
+                    // The upgrade request itself is stream 1
+                    respond(out, 1);
+                    serveHttp2(in, out);
+                    return;
+                }
+                http11Requests.incrementAndGet();
+                sleep(responseDelay);
+                synchronized (out) {
+                    out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + BODY.length + "\r\n\r\n").getBytes(StandardCharsets.US_ASCII));
+                    out.write(BODY);
+                    out.flush();
+                }
+            }
+        } catch (IOException ex) {
+            // Connection closed by the client
+        }
+    }
+
+    private void serveHttp2(DataInputStream in, OutputStream out) throws IOException {
+        byte[] preface = new byte[PREFACE.length];
+        in.readFully(preface);
+        while (true) {
+            int length = in.readUnsignedByte() << 16 | in.readUnsignedShort();
+            int type = in.readUnsignedByte();
+            int flags = in.readUnsignedByte();
+            int stream = in.readInt() & 0x7fffffff;
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+            switch (type) {
+                case SETTINGS:
+                    if ((flags & ACK) == 0) {
+                        synchronized (out) {
+                            writeFrame(out, SETTINGS, ACK, 0, new byte[0]);
+                        }
+                    }
+                    break;
+                case PING:
+                    if ((flags & ACK) == 0) {
+                        synchronized (out) {
+                            writeFrame(out, PING, ACK, 0, payload);
+                        }
+                    }
+                    break;
+                case HEADERS:
+                case DATA:
+                    // Request headers are not decoded; a stream is answered
+                    // once the client has sent all of it
+                    if ((flags & END_STREAM) != 0) {
+                        respond(out, stream);
+                    }
+                    break;
+                case GOAWAY:
+                    return;
+                default:
+                    break;
+            }
+        }
+    }
+
+    private void respond(OutputStream out, int stream) {
+        http2Streams.incrementAndGet();
+        peakOpenStreams.accumulateAndGet(openStreams.incrementAndGet(), Math::max);
+        responder.schedule(() -> {
+            openStreams.decrementAndGet();
+            // :status 200 from the static table, then content-length as a
+            // literal with an indexed name
+            byte[] length = Integer.toString(BODY.length).getBytes(StandardCharsets.US_ASCII);
+            ByteArrayOutputStream headers = new ByteArrayOutputStream();
+            headers.write(0x88);
+            headers.write(0x0f);
+            headers.write(28 - 15);
+            headers.write(length.length);
+            headers.write(length, 0, length.length);
+            try {
+                synchronized (out) {
+                    writeFrame(out, HEADERS, END_HEADERS, stream, headers.toByteArray());
+                    writeFrame(out, DATA, END_STREAM, stream, BODY);
+                }
+            } catch (IOException ex) {
+                // Connection closed by the client
+            }
+        }, responseDelay, TimeUnit.MILLISECONDS);
+    }
+
+    private static void writeFrame(OutputStream out, int type, int flags, int stream, byte[] payload) throws IOException {
+        byte[] header = {
+            (byte) (payload.length >> 16), (byte) (payload.length >> 8), (byte) payload.length,
+            (byte) type, (byte) flags,
+            (byte) (stream >> 24), (byte) (stream >> 16), (byte) (stream >> 8), (byte) stream};
+        out.write(header);
+        out.write(payload);
+        out.flush();
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        ByteArrayOutputStream line = new ByteArrayOutputStream();
+        for (int b = in.read(); b != '\n'; b = in.read()) {
+            if (b < 0) {
+                if (line.size() == 0) {
+                    return null;
+                }
+                throw new EOFException();
+            }
+            if (b != '\r') {
+                line.write(b);
+            }
+        }
+        return line.toString(StandardCharsets.US_ASCII);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -15,19 +15,32 @@
  */
 package com.adobe.ags.curly.test;
 
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
 import java.io.IOException;
-import java.io.UnsupportedEncodingException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+import org.apache.http.Header;
+import org.apache.http.HttpEntityEnclosingRequest;
 import org.apache.http.HttpRequest;
 import org.apache.http.HttpResponse;
+import org.apache.http.NameValuePair;
+import org.apache.http.client.utils.URLEncodedUtils;
 import org.apache.http.config.SocketConfig;
+import org.apache.http.entity.ContentType;
 import org.apache.http.entity.StringEntity;
 import org.apache.http.impl.bootstrap.HttpServer;
 import org.apache.http.impl.bootstrap.ServerBootstrap;
 import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
 
 /**
  *
@@ -42,6 +55,22 @@ public class TestWebServer {
     long processingDelay = 0;
     boolean requireLogin = true;
     int port;
+    AtomicInteger loginCount = new AtomicInteger();
+    boolean issueLoginToken = false;
+    // Password the login form accepts; any password if null
+    String loginPassword = null;
+    // Login token cookies which are no longer accepted, and how to say so
+    Set<String> expiredTokens = ConcurrentHashMap.newKeySet();
+    boolean redirectToLogin = false;
+    AtomicInteger requestCount = new AtomicInteger();
+    AtomicInteger challengeCount = new AtomicInteger();
+    // Stand-in for the direct binary upload servlets and blob storage
+    int uploadParts = 3;
+    AtomicInteger failingParts = new AtomicInteger();
+    Map<String, byte[]> blobs = new ConcurrentHashMap<>();
+    // Parts which arrived with credentials or cookies meant for AEM
+    AtomicInteger authenticatedParts = new AtomicInteger();
+    List<List<NameValuePair>> completedUploads = Collections.synchronizedList(new ArrayList<>());
 
     static public TestWebServer getServer() throws IOException, InterruptedException {
         return new TestWebServer(IP_PORT++);
@@ -66,16 +95,48 @@ public class TestWebServer {
         responseMessage = message;
     }
 
-    void handleHttpRequest(HttpRequest request, HttpResponse response, HttpContext context) throws UnsupportedEncodingException {
+    void handleHttpRequest(HttpRequest request, HttpResponse response, HttpContext context) throws IOException {
         lastRequest = request;
+        requestCount.incrementAndGet();
+        String uri = request.getRequestLine().getUri();
+        if (uri.endsWith("/j_security_check")) {
+            int login = loginCount.incrementAndGet();
+            if (loginPassword != null && !URLEncodedUtils.parse(((HttpEntityEnclosingRequest) request).getEntity()).stream()
+                    .anyMatch(param -> param.getName().equals("j_password") && param.getValue().equals(loginPassword))) {
+                response.setStatusCode(403);
+                return;
+            }
+            if (issueLoginToken) {
+                response.addHeader("Set-Cookie", "login-token=token" + login + "; Path=/; HttpOnly");
+            }
+        } else if (isExpired(request)) {
+            if (redirectToLogin) {
+                response.setStatusCode(302);
+                response.setHeader("Location", "/libs/granite/core/content/login.html?resource=" + uri);
+            } else {
+                response.setStatusCode(401);
+            }
+            return;
+        }
+        if (uri.startsWith("/blob/")) {
+            handleBlobPart(request, response, uri);
+            return;
+        }
         try {
             if (requireLogin && request.getFirstHeader("Authorization") == null) {
+                challengeCount.incrementAndGet();
                 response.setStatusCode(401);
                 response.setHeader("WWW-Authenticate", "Basic realm=\"test\"");
             } else {
                 Thread.sleep(processingDelay);
                 if (request.getRequestLine().getUri().contains("failure")) {
                     response.setStatusCode(403);
+                } else if (uri.endsWith(".initiateUpload.json")) {
+                    handleInitiateUpload(request, response, uri);
+                } else if (uri.endsWith(".completeUpload.json")) {
+                    completedUploads.add(URLEncodedUtils.parse(((HttpEntityEnclosingRequest) request).getEntity()));
+                    response.setStatusCode(201);
+                    response.setEntity(new StringEntity(responseMessage));
                 } else {
                     response.setEntity(new StringEntity(responseMessage));
                 }
@@ -85,6 +146,55 @@ public class TestWebServer {
         }
     }
 
+    private boolean isExpired(HttpRequest request) {
+        for (Header cookies : request.getHeaders("Cookie")) {
+            for (String cookie : cookies.getValue().split(";\\s*")) {
+                if (expiredTokens.contains(cookie)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private void handleInitiateUpload(HttpRequest request, HttpResponse response, String uri) throws IOException {
+        String folder = uri.substring(0, uri.length() - ".initiateUpload.json".length());
+        JsonArray files = new JsonArray();
+        for (NameValuePair param : URLEncodedUtils.parse(((HttpEntityEnclosingRequest) request).getEntity())) {
+            if (param.getName().equals("fileName")) {
+                JsonObject file = new JsonObject();
+                file.addProperty("fileName", param.getValue());
+                file.addProperty("mimeType", "application/octet-stream");
+                file.addProperty("uploadToken", "token-" + param.getValue());
+                file.addProperty("minPartSize", 1);
+                file.addProperty("maxPartSize", 1024 * 1024 * 1024);
+                JsonArray uris = new JsonArray();
+                for (int i = 0; i < uploadParts; i++) {
+                    uris.add("http://localhost:" + port + "/blob/" + param.getValue() + "/" + i);
+                }
+                file.add("uploadURIs", uris);
+                files.add(file);
+            }
+        }
+        JsonObject session = new JsonObject();
+        session.addProperty("completeURI", folder + ".completeUpload.json");
+        session.addProperty("folderPath", folder);
+        session.add("files", files);
+        response.setEntity(new StringEntity(session.toString(), ContentType.APPLICATION_JSON));
+    }
+
+    private void handleBlobPart(HttpRequest request, HttpResponse response, String uri) throws IOException {
+        if (request.containsHeader("Authorization") || request.containsHeader("Cookie")) {
+            authenticatedParts.incrementAndGet();
+        }
+        if (failingParts.getAndDecrement() > 0) {
+            response.setStatusCode(503);
+            return;
+        }
+        blobs.put(uri, EntityUtils.toByteArray(((HttpEntityEnclosingRequest) request).getEntity()));
+        response.setStatusCode(201);
+    }
+
     public void shutdown() {
         if (server != null) {
             server.shutdown(1, TimeUnit.SECONDS);
@@ -0,0 +1,114 @@
+/*
+ * Copyright 2026 Adobe.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.adobe.ags.curly.test;
+
+import com.adobe.ags.curly.controller.DigestingBodyPublisher;
+import com.adobe.ags.curly.controller.FileChannelEntity;
+import com.adobe.ags.curly.controller.UploadCache;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Flow;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+public class UploadCacheTest {
+
+    @Test
+    public void hashIsComputedWhileSending() throws IOException, NoSuchAlgorithmException {
+        File upload = File.createTempFile("curly", ".zip");
+        upload.deleteOnExit();
+        byte[] content = new byte[300 * 1024];
+        new Random(7).nextBytes(content);
+        Files.write(upload.toPath(), content);
+
+        UploadCache cache = new UploadCache(UploadCache.Policy.SKIP_DUPLICATE);
+        assertTrue(cache.isEnabled());
+        UploadCache.FileKey key = new UploadCache.FileKey(upload);
+        assertNull(cache.getHash(key));
+
+        MessageDigest digest = cache.newDigest();
+        FileChannelEntity entity = new FileChannelEntity(upload, null, digest);
+        // Sending twice, as on a retry, must not change the hash
+        entity.writeTo(new ByteArrayOutputStream());
+        entity.writeTo(new ByteArrayOutputStream());
+        String hash = cache.recordHash(key, digest);
+
+        String expected = String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)));
+        assertEquals(expected, hash);
+        assertEquals(hash, cache.getHash(new UploadCache.FileKey(upload)));
+
+        cache.recordRepositoryPath(hash, "/content/dam/a/file.zip");
+        cache.recordRepositoryPath(hash, "/content/dam/b/file.zip");
+        assertEquals("/content/dam/a/file.zip", cache.getRepositoryPath(hash));
+
+        assertTrue(upload.setLastModified(upload.lastModified() - 10000));
+        assertNull(cache.getHash(new UploadCache.FileKey(upload)));
+    }
+
+    @Test
+    public void hashIsComputedWhileSendingAsync() throws Exception {
+        File upload = File.createTempFile("curly", ".zip");
+        upload.deleteOnExit();
+        byte[] content = new byte[300 * 1024];
+        new Random(11).nextBytes(content);
+        Files.write(upload.toPath(), content);
+
+        UploadCache cache = new UploadCache(UploadCache.Policy.SKIP_DUPLICATE);
+        MessageDigest digest = cache.newDigest();
+        DigestingBodyPublisher body = new DigestingBodyPublisher(upload.toPath(), digest);
+        assertEquals(content.length, body.contentLength());
+        // Sending twice, as on a resend, must not change the hash
+        for (int send = 0; send < 2; send++) {
+            CompletableFuture<Long> sent = new CompletableFuture<>();
+            body.subscribe(new Flow.Subscriber<ByteBuffer>() {
+                long bytes = 0;
+
+                @Override
+                public void onSubscribe(Flow.Subscription subscription) {
+                    subscription.request(Long.MAX_VALUE);
+                }
+
+                @Override
+                public void onNext(ByteBuffer item) {
+                    bytes += item.remaining();
+                }
+
+                @Override
+                public void onError(Throwable throwable) {
+                    sent.completeExceptionally(throwable);
+                }
+
+                @Override
+                public void onComplete() {
+                    sent.complete(bytes);
+                }
+            });
+            assertEquals(content.length, (long) sent.get());
+        }
+        String hash = cache.recordHash(new UploadCache.FileKey(upload), digest);
+
+        String expected = String.format("%064x", new BigInteger(1, MessageDigest.getInstance("SHA-256").digest(content)));
+        assertEquals(expected, hash);
+    }
+}